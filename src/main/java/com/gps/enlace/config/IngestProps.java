@@ -0,0 +1,31 @@
+package com.gps.enlace.config;
+
+import com.gps.enlace.ingest.OverflowPolicy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "ingest")
+@Data
+public class IngestProps {
+    // frames crudos del WebSocket: nunca bloquear el hilo de Netty
+    private Stage frames = new Stage(65_536, OverflowPolicy.DROP_OLDEST, 256);
+    // fixes decodificados → PositionCache
+    private Stage cache = new Stage(65_536, OverflowPolicy.BLOCK, 512);
+    // estado de dispositivos y eventos (devices / events) → DeviceStatusCache
+    private Stage status = new Stage(16_384, OverflowPolicy.BLOCK, 256);
+    // fixes decodificados → listeners (viajes, historial, persistencia)
+    private Stage fanout = new Stage(131_072, OverflowPolicy.DROP_NEWEST, 512);
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Stage {
+        private int capacity;
+        private OverflowPolicy overflow;
+        private int batchSize;
+    }
+}
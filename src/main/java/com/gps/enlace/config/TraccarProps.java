@@ -4,6 +4,9 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 @ConfigurationProperties(prefix = "traccar")
 @Data
@@ -16,4 +19,37 @@ public class TraccarProps {
     private int wsPingIntervalSeconds = 30;
     private int wsReconnectBackoffInitialMs = 500;
     private int wsReconnectBackoffMaxMs = 10_000;
+
+    // /api/reports/route: ventanas redondeadas comparten una sola llamada (single-flight)
+    private int routeCoalesceWindowSeconds = 30;
+    private int routeResultTtlSeconds = 15;
+    private int routeMaxConcurrent = 4;
+    private long routeQueueTimeoutMs = 10_000;
+    // tope de una llamada a Traccar con el permiso tomado; sin esto una llamada colgada lo retiene para siempre
+    private long routeTimeoutMs = 30_000;
+
+    // varias instancias Traccar (traccar.sources[0].base-url=...); si está vacía se usa la de arriba
+    private List<Source> sources = new ArrayList<>();
+
+    @Data
+    public static class Source {
+        private String id;
+        private int namespace;      // prefijo del deviceId en PositionCache (0 = ids sin cambio)
+        private String baseUrl;
+        private String user;
+        private String pass;
+        private String wsPath = "/api/socket";
+    }
+
+    public List<Source> effectiveSources() {
+        if (!sources.isEmpty()) return sources;
+        Source s = new Source();
+        s.setId("default");
+        s.setNamespace(0);
+        s.setBaseUrl(baseUrl);
+        s.setUser(user);
+        s.setPass(pass);
+        s.setWsPath(wsPath);
+        return List.of(s);
+    }
 }
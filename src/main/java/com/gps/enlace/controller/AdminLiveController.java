@@ -1,6 +1,9 @@
 package com.gps.enlace.controller;
 
 import com.gps.enlace.config.TraccarProps;
+import com.gps.enlace.history.TrailService;
+import com.gps.enlace.live.DeviceStatusCache;
+import com.gps.enlace.live.LiveEventBus;
 import com.gps.enlace.live.LiveFix;
 import com.gps.enlace.live.PositionCache;
 import org.springframework.http.MediaType;
@@ -10,8 +13,10 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Instant;
 import java.time.ZoneOffset;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Executors;
@@ -24,10 +29,15 @@ public class AdminLiveController {
 
     private final PositionCache cache;
     private final TraccarProps props;
-    private final com.gps.enlace.traccar.TraccarClient traccar;
+    private final TrailService trails;
+    private final LiveEventBus events;
+    private final DeviceStatusCache deviceStatus;
 
-    public AdminLiveController(PositionCache cache, TraccarProps props, com.gps.enlace.traccar.TraccarClient traccar) {
-        this.cache = cache; this.props = props; this.traccar = traccar;
+
+    public AdminLiveController(PositionCache cache, TraccarProps props, TrailService trails, LiveEventBus events,
+                               DeviceStatusCache deviceStatus) {
+        this.cache = cache; this.props = props; this.trails = trails; this.events = events;
+        this.deviceStatus = deviceStatus;
     }
 
     @GetMapping(value = "/live", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -37,8 +47,19 @@ public class AdminLiveController {
         if (cache.getState() == PositionCache.State.DOWN) return ResponseEntity.status(503).body(Map.of("error","FEED_DOWN"));
         Optional<LiveFix> fix = cache.get(id);
         if (fix.isEmpty()) return ResponseEntity.noContent().build();
-        boolean stale = PositionCache.isStale(fix.get().fixTime, Integer.getInteger("position.stale-minutes", 3));
-        return ResponseEntity.ok(dto(fix.get(), stale));
+        return ResponseEntity.ok(dto(fix.get(), cache.isStale(id)));
+    }
+
+    // estado online/offline, ignición y últimos eventos (sin depender de que haya fix)
+    @GetMapping(value = "/status", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<?> status(@RequestParam(name="traccarDeviceId", required = false) Long deviceId) {
+        long id = deviceId != null ? deviceId : props.getDeviceId();
+        var st = deviceStatus.get(id);
+        if (st.isEmpty()) return ResponseEntity.noContent().build();
+        Map<String,Object> out = DeviceStatusCache.statusDto(id, st.get());
+        out.put("recentEvents", st.get().recentEvents().stream().map(DeviceStatusCache::eventDto).toList());
+        return ResponseEntity.ok(out);
     }
 
     @GetMapping(value = "/live/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
@@ -58,16 +79,24 @@ public class AdminLiveController {
                 Optional<LiveFix> fix = cache.get(id);
                 if (fix.isEmpty()) return;
                 if (lastSent[0] == null || fix.get().fixTime.isAfter(lastSent[0].fixTime)) {
-                    boolean stale = PositionCache.isStale(fix.get().fixTime, Integer.getInteger("position.stale-minutes", 3));
-                    emitter.send(SseEmitter.event().name("position").data(dto(fix.get(), stale)));
+                    emitter.send(SseEmitter.event().name("position").data(dto(fix.get(), cache.isStale(id))));
                     lastSent[0] = fix.get();
                 }
             } catch (IOException ignored) { }
         };
 
+        // stale (rueda de tiempo), device y event (WS de Traccar) llegan empujados, no por el poll
+        Runnable unsubscribe = events.subscribe(id, ev -> {
+            try { emitter.send(SseEmitter.event().name(ev.name()).data(ev.data())); }
+            catch (IOException e) {
+                emitter.completeWithError(e);
+                throw new UncheckedIOException(e); // el bus da de baja al suscriptor
+            }
+        });
+
         scheduler.scheduleAtFixedRate(tick, 0, 2, TimeUnit.SECONDS);
-        emitter.onTimeout(() -> scheduler.shutdownNow());
-        emitter.onCompletion(scheduler::shutdownNow);
+        emitter.onTimeout(() -> { scheduler.shutdownNow(); unsubscribe.run(); });
+        emitter.onCompletion(() -> { scheduler.shutdownNow(); unsubscribe.run(); });
         return emitter;
     }
 
@@ -75,13 +104,14 @@ public class AdminLiveController {
     @GetMapping(value = "/trail", produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseBody
     public ResponseEntity<?> trail(@RequestParam("deviceId") long deviceId,
-                                   @RequestParam(name = "hours", defaultValue = "24") int hours) {
+                                   @RequestParam(name = "hours", defaultValue = "24") int hours,
+                                   @RequestParam(name = "maxPoints", required = false) Integer maxPoints) {
 
         // Traccar server local time (example: UTC-08:00). Move to config if needed.
         var TRACCAR_ZONE = java.time.ZoneId.of("UTC-08:00");
 
         var toZ   = java.time.ZonedDateTime.now(TRACCAR_ZONE);
-        var fromZ = toZ.minusHours(hours);
+        var fromZ = toZ.minusHours(trails.clampHours(hours));
 
         java.time.Instant to   = toZ.toInstant();   // send UTC instants
         java.time.Instant from = fromZ.toInstant();
@@ -94,8 +124,9 @@ public class AdminLiveController {
                 + " to(local)=" + toZ);
 
         try {
-            var list = traccar.fetchRoute(deviceId, from, to).block();
-            if (list != null) list.forEach(p -> System.out.println(p.fixTime));
+            var trail = trails.trail(deviceId, from, to, maxPoints);
+            var list = trail.points();
+            System.out.println("[TRAIL] resolution=" + trail.resolution() + " points=" + list.size());
 
             var dto = list.stream()
                     .map(p -> java.util.Map.<String,Object>of(
@@ -105,7 +136,7 @@ public class AdminLiveController {
                     ))
                     .collect(java.util.stream.Collectors.toList());
 
-            return ResponseEntity.ok(java.util.Map.of("trail", dto));
+            return ResponseEntity.ok(java.util.Map.of("trail", dto, "resolution", trail.resolution()));
         } catch (Exception e) {
             return ResponseEntity.status(502).body(java.util.Map.of("error", "TRACCAR_ROUTE_FAILED"));
         }
@@ -113,14 +144,21 @@ public class AdminLiveController {
 
 
     private Map<String,Object> dto(LiveFix f, boolean stale) {
-        return Map.of(
+        Map<String,Object> m = new HashMap<>(Map.of(
                 "lat", f.lat,
                 "lon", f.lon,
-                "speedKph", f.speedKph,
-                "headingDeg", f.headingDeg,
                 "fixTime", f.fixTime.toString(),
                 "deviceId", f.traccarDeviceId,
                 "stale", stale
-        );
+        ));
+        m.put("speedKph", f.speedKph);
+        m.put("headingDeg", f.headingDeg);
+        deviceStatus.get(f.traccarDeviceId).ifPresent(s -> {
+            m.put("status", s.status());
+            m.put("ignition", s.ignition());
+            m.put("lastUpdate", s.lastUpdate() != null ? s.lastUpdate().toString() : null);
+            m.put("recentEvents", s.recentEvents().stream().map(DeviceStatusCache::eventDto).toList());
+        });
+        return m;
     }
 }
@@ -1,7 +1,7 @@
 package com.gps.enlace.controller;
 
+import com.gps.enlace.device.DeviceDirectory;
 import com.gps.enlace.dto.DeviceItemDto;
-import com.gps.enlace.repo.DeviceRepo;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -12,12 +12,12 @@ import java.util.List;
 @RequestMapping("/api/client")
 public class ClientDeviceController {
 
-    private final DeviceRepo devices;
+    private final DeviceDirectory devices;
 
     @Value("${demo.user-id:1}")
     private Long demoUserId;
 
-    public ClientDeviceController(DeviceRepo devices) {
+    public ClientDeviceController(DeviceDirectory devices) {
         this.devices = devices;
     }
 
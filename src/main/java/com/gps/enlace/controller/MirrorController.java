@@ -1,5 +1,9 @@
 package com.gps.enlace.controller;
 
+import com.gps.enlace.history.ReplayService;
+import com.gps.enlace.history.TrailService;
+import com.gps.enlace.live.DeviceStatusCache;
+import com.gps.enlace.live.LiveEventBus;
 import com.gps.enlace.live.LiveFix;
 import com.gps.enlace.live.PositionCache;
 import com.gps.enlace.mirror.MirrorService;
@@ -11,8 +15,12 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Executors;
@@ -25,16 +33,23 @@ public class MirrorController {
 
     private final MirrorService mirrorService;
     private final PositionCache cache;
-    private final com.gps.enlace.traccar.TraccarClient traccar;
+    private final TrailService trails;
+    private final LiveEventBus events;
+    private final ReplayService replays;
+    private final DeviceStatusCache deviceStatus;
 
-    @Value("${position.stale-minutes:10}")
-    private int staleMinutes;
 
-    public MirrorController(MirrorService mirrorService, PositionCache cache,
-                            com.gps.enlace.traccar.TraccarClient traccar) {
+    @Value("${mirror.bulk.max-devices:5000}")
+    private int maxBulkDevices;
+
+    public MirrorController(MirrorService mirrorService, PositionCache cache, TrailService trails,
+                            LiveEventBus events, ReplayService replays, DeviceStatusCache deviceStatus) {
         this.mirrorService = mirrorService;
         this.cache = cache;
-        this.traccar = traccar;
+        this.trails = trails;
+        this.events = events;
+        this.replays = replays;
+        this.deviceStatus = deviceStatus;
     }
 
     /* ---- ADMIN: crear enlace espejo ---- */
@@ -65,6 +80,41 @@ public class MirrorController {
         ));
     }
 
+    /* ---- ADMIN: crear enlaces espejo en lote ---- */
+    @PostMapping("/mirror/bulk")
+    public ResponseEntity<?> createBulk(@RequestBody Map<String, Object> body,
+                                        @RequestHeader(value = "X-Forwarded-Proto", required = false) String proto,
+                                        @RequestHeader(value = "Host", required = false) String host) {
+        if (!(body.get("traccarDeviceIds") instanceof List<?> raw) || raw.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error","MISSING_DEVICE_IDS"));
+        }
+        if (raw.size() > maxBulkDevices) {
+            return ResponseEntity.badRequest().body(Map.of("error","TOO_MANY_DEVICES", "max", maxBulkDevices));
+        }
+        List<Long> ids = new ArrayList<>(raw.size());
+        for (Object o : raw) {
+            if (!(o instanceof Number n)) return ResponseEntity.badRequest().body(Map.of("error","INVALID_DEVICE_ID"));
+            ids.add(n.longValue());
+        }
+
+        Integer expirationHours = body.get("expirationHours") instanceof Number
+            ? ((Number) body.get("expirationHours")).intValue()
+            : null;
+
+        var links = mirrorService.createBulk(ids, expirationHours);
+        String scheme = (proto != null ? proto : "http");
+        String base = (host != null ? scheme + "://" + host : "");
+        var out = links.stream()
+                .map(ml -> Map.of(
+                        "traccarDeviceId", ml.getDevice().getTraccarDeviceId(),
+                        "token", ml.getToken(),
+                        "url", base + "/ver/" + ml.getToken(),
+                        "expiresAt", ml.getExpiresAt().toString()
+                ))
+                .toList();
+        return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("links", out));
+    }
+
     /* ---- PÚBLICO: último fix ---- */
     @GetMapping("/mirror/{token}/latest")
     public ResponseEntity<?> latest(@PathVariable String token) {
@@ -72,14 +122,14 @@ public class MirrorController {
         if (opt.isEmpty()) return ResponseEntity.status(410).body(Map.of("error","TOKEN_EXPIRED_OR_INVALID"));
         var lf = mirrorService.latestByToken(token);
         if (lf.isEmpty()) return ResponseEntity.noContent().build();
-        boolean stale = PositionCache.isStale(lf.get().fixTime, staleMinutes);
-        return ResponseEntity.ok(dto(lf.get(), stale));
+        return ResponseEntity.ok(dto(lf.get(), cache.isStale(lf.get().traccarDeviceId)));
     }
 
     /* ---- PÚBLICO: historial /trail ---- */
     @GetMapping(value="/mirror/{token}/trail", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> publicTrail(@PathVariable String token,
-                                         @RequestParam(name="hours", defaultValue = "24") int hours) {
+                                         @RequestParam(name="hours", defaultValue = "24") int hours,
+                                         @RequestParam(name="maxPoints", required = false) Integer maxPoints) {
         var optId = mirrorService.resolveActiveDeviceId(token);
         if (optId.isEmpty()) {
             return ResponseEntity.status(410).body(Map.of("error","TOKEN_EXPIRED_OR_INVALID"));
@@ -87,14 +137,14 @@ public class MirrorController {
         long deviceId = optId.get();
 
         Instant to = Instant.now();
-        Instant from = to.minusSeconds((long) hours * 3600);
+        Instant from = to.minusSeconds((long) trails.clampHours(hours) * 3600);
 
         try {
-            var list = traccar.fetchRoute(deviceId, from, to).block();
-            var dto = list.stream()
+            var trail = trails.trail(deviceId, from, to, maxPoints);
+            var dto = trail.points().stream()
                     .map(p -> Map.of("lat", p.lat, "lon", p.lon, "fixTime", p.fixTime.toString()))
                     .toList();
-            return ResponseEntity.ok(Map.of("trail", dto));
+            return ResponseEntity.ok(Map.of("trail", dto, "resolution", trail.resolution()));
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(502).body(Map.of("error","TRACCAR_ROUTE_FAILED"));
@@ -115,8 +165,7 @@ public class MirrorController {
         // envío inicial si existe
         mirrorService.latestByToken(token).ifPresent(f -> {
             try {
-                boolean stale = PositionCache.isStale(f.fixTime, staleMinutes);
-                emitter.send(SseEmitter.event().name("position").data(dto(f, stale)));
+                emitter.send(SseEmitter.event().name("position").data(dto(f, cache.isStale(traccarDeviceId))));
                 last[0] = f;
             } catch (IOException ignored) {}
         });
@@ -140,29 +189,78 @@ public class MirrorController {
                 Optional<LiveFix> cur = cache.get(traccarDeviceId);
                 if (cur.isEmpty()) return;
                 if (last[0] == null || cur.get().fixTime.isAfter(last[0].fixTime)) {
-                    boolean stale = PositionCache.isStale(cur.get().fixTime, staleMinutes);
-                    emitter.send(SseEmitter.event().name("position").data(dto(cur.get(), stale)));
+                    emitter.send(SseEmitter.event().name("position").data(dto(cur.get(), cache.isStale(traccarDeviceId))));
                     last[0] = cur.get();
                 }
             } catch (IOException ignored) {}
         };
 
+        // stale (rueda de tiempo) y device (WS de Traccar) llegan empujados, no por el poll;
+        // los eventos/alarmas no se exponen en el enlace público
+        Runnable unsubscribe = events.subscribe(traccarDeviceId, ev -> {
+            if (!"stale".equals(ev.name()) && !"device".equals(ev.name())) return;
+            try { emitter.send(SseEmitter.event().name(ev.name()).data(ev.data())); }
+            catch (IOException e) {
+                emitter.completeWithError(e);
+                throw new UncheckedIOException(e); // el bus da de baja al suscriptor
+            }
+        });
+
         scheduler.scheduleAtFixedRate(tick, 1, 2, TimeUnit.SECONDS);
-        emitter.onTimeout(scheduler::shutdownNow);
-        emitter.onCompletion(scheduler::shutdownNow);
+        emitter.onTimeout(() -> { scheduler.shutdownNow(); unsubscribe.run(); });
+        emitter.onCompletion(() -> { scheduler.shutdownNow(); unsubscribe.run(); });
 
         return ResponseEntity.ok(emitter);
     }
 
+    /* ---- PÚBLICO: replay SSE ?from=&to=|hours=&speed=&at=&paused= ---- */
+    @GetMapping(value="/mirror/{token}/replay", produces= MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> replay(@PathVariable String token,
+                                    @RequestParam(name="from", required = false) String fromParam,
+                                    @RequestParam(name="to", required = false) String toParam,
+                                    @RequestParam(name="hours", defaultValue = "24") int hours,
+                                    @RequestParam(name="speed", defaultValue = "10") double speed,
+                                    @RequestParam(name="at", required = false) String atParam,
+                                    @RequestParam(name="paused", defaultValue = "false") boolean paused,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        var optId = mirrorService.resolveActiveDeviceId(token);
+        if (optId.isEmpty()) return ResponseEntity.status(HttpStatus.GONE).build();
+
+        Instant to, from, at;
+        try {
+            to = toParam != null ? Instant.parse(toParam) : Instant.now();
+            from = fromParam != null ? Instant.parse(fromParam) : to.minusSeconds((long) replays.clampHours(hours) * 3600);
+            to = replays.clampTo(from, to);
+            // el salto explícito manda; si no, se reanuda desde el último evento recibido
+            String seek = atParam != null ? atParam : lastEventId;
+            at = seek != null && !seek.isBlank() ? Instant.parse(seek).plusMillis(atParam != null ? 0 : 1) : null;
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON)
+                    .body(Map.of("error","INVALID_TIME_RANGE"));
+        }
+        if (!from.isBefore(to)) {
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON)
+                    .body(Map.of("error","INVALID_TIME_RANGE"));
+        }
+        double s = Math.max(0.1, Math.min(speed, 1000));
+        return ResponseEntity.ok(replays.start(optId.get(), from, to, at, s, paused));
+    }
+
     private Map<String,Object> dto(LiveFix f, boolean stale) {
-        return Map.of(
+        Map<String,Object> m = new HashMap<>(Map.of(
                 "lat", f.lat,
                 "lon", f.lon,
-                "speedKph", f.speedKph,
-                "headingDeg", f.headingDeg,
                 "fixTime", f.fixTime.toString(),
                 "deviceId", f.traccarDeviceId,
                 "stale", stale
-        );
+        ));
+        m.put("speedKph", f.speedKph);
+        m.put("headingDeg", f.headingDeg);
+        deviceStatus.get(f.traccarDeviceId).ifPresent(s -> {
+            m.put("status", s.status());
+            m.put("ignition", s.ignition());
+            m.put("lastUpdate", s.lastUpdate() != null ? s.lastUpdate().toString() : null);
+        });
+        return m;
     }
 }
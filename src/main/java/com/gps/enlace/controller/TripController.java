@@ -0,0 +1,150 @@
+package com.gps.enlace.controller;
+
+import com.gps.enlace.domain.Stop;
+import com.gps.enlace.domain.Trip;
+import com.gps.enlace.repo.StopRepo;
+import com.gps.enlace.repo.TripRepo;
+import com.gps.enlace.trip.TripTracker;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+public class TripController {
+
+    private final TripRepo trips;
+    private final StopRepo stops;
+    private final TripTracker tracker;
+
+    public TripController(TripRepo trips, StopRepo stops, TripTracker tracker) {
+        this.trips = trips;
+        this.stops = stops;
+        this.tracker = tracker;
+    }
+
+    // === VIAJES: ?deviceId=4&hours=24 ===
+    @GetMapping(value = "/trips", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> trips(@RequestParam("deviceId") long deviceId,
+                                   @RequestParam(name = "hours", defaultValue = "24") int hours) {
+        OffsetDateTime to = OffsetDateTime.now(ZoneOffset.UTC);
+        OffsetDateTime from = to.minusHours(hours);
+
+        var out = new LinkedHashMap<String, Object>();
+        out.put("trips", trips.findOverlapping(deviceId, from, to).stream().map(this::dto).toList());
+        tracker.snapshot(deviceId).ifPresent(s -> out.put("current", Map.of(
+                "motion", s.motion().name(),
+                "since", s.since().toString(),
+                "odometerM", s.odometerM(),
+                "openTripDistanceM", s.openTripDistanceM(),
+                "lastFixTime", s.lastFixTime().toString()
+        )));
+        return ResponseEntity.ok(out);
+    }
+
+    // === PARADAS: ?deviceId=4&hours=24 ===
+    @GetMapping(value = "/stops", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> stops(@RequestParam("deviceId") long deviceId,
+                                   @RequestParam(name = "hours", defaultValue = "24") int hours) {
+        OffsetDateTime to = OffsetDateTime.now(ZoneOffset.UTC);
+        OffsetDateTime from = to.minusHours(hours);
+        return ResponseEntity.ok(Map.of("stops", stops.findOverlapping(deviceId, from, to).stream().map(this::dto).toList()));
+    }
+
+    // === RESUMEN DIARIO DE FLOTA: ?date=2025-01-31&zone=UTC ===
+    // Viajes y paradas que cruzan medianoche se reparten entre ambos días (distancia en proporción
+    // al tiempo). El viaje aún abierto del tracker también suma, marcado con inProgress=true.
+    @GetMapping(value = "/fleet/summary", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> fleetSummary(@RequestParam(name = "date", required = false) String date,
+                                          @RequestParam(name = "zone", defaultValue = "UTC") String zone) {
+        ZoneId z;
+        LocalDate day;
+        try {
+            z = ZoneId.of(zone);
+            day = date != null ? LocalDate.parse(date) : LocalDate.now(z);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "INVALID_DATE_OR_ZONE"));
+        }
+        OffsetDateTime from = day.atStartOfDay(z).toOffsetDateTime();
+        OffsetDateTime to = day.plusDays(1).atStartOfDay(z).toOffsetDateTime();
+
+        Map<Long, Map<String, Object>> byDevice = new HashMap<>();
+        for (TripRepo.DeviceTotals t : trips.totalsByDevice(from, to)) {
+            var row = byDevice.computeIfAbsent(t.getTraccarDeviceId(), TripController::emptyRow);
+            row.put("trips", t.getTrips());
+            row.put("distanceM", t.getDistanceM());
+            row.put("movingSeconds", t.getMovingSeconds());
+            row.put("maxSpeedKph", t.getMaxSpeedKph());
+        }
+        for (TripTracker.Snapshot open : tracker.snapshots()) {
+            if (open.motion() != TripTracker.Motion.MOVING) continue;
+            Instant start = open.since(), end = open.lastFixTime();
+            Instant clipStart = start.isAfter(from.toInstant()) ? start : from.toInstant();
+            Instant clipEnd = end.isBefore(to.toInstant()) ? end : to.toInstant();
+            if (!clipEnd.isAfter(clipStart)) continue;
+            long total = Duration.between(start, end).getSeconds();
+            long inDay = Duration.between(clipStart, clipEnd).getSeconds();
+            double distance = total > 0 ? open.openTripDistanceM() * inDay / total : open.openTripDistanceM();
+            var row = byDevice.computeIfAbsent(open.traccarDeviceId(), TripController::emptyRow);
+            row.put("distanceM", ((Number) row.get("distanceM")).doubleValue() + distance);
+            row.put("movingSeconds", ((Number) row.get("movingSeconds")).doubleValue() + inDay);
+            row.put("inProgress", true);
+        }
+        for (StopRepo.DeviceStopCount s : stops.countsByDevice(from, to)) {
+            var row = byDevice.computeIfAbsent(s.getTraccarDeviceId(), TripController::emptyRow);
+            row.put("stops", s.getStops());
+            row.put("stoppedSeconds", s.getStoppedSeconds());
+        }
+        List<Map<String, Object>> devices = byDevice.values().stream()
+                .sorted((a, b) -> Long.compare((Long) a.get("deviceId"), (Long) b.get("deviceId")))
+                .toList();
+        return ResponseEntity.ok(Map.of("date", day.toString(), "zone", z.getId(), "devices", devices));
+    }
+
+    private static Map<String, Object> emptyRow(Long deviceId) {
+        var row = new LinkedHashMap<String, Object>();
+        row.put("deviceId", deviceId);
+        row.put("trips", 0L);
+        row.put("distanceM", 0.0);
+        row.put("movingSeconds", 0.0);
+        row.put("maxSpeedKph", null);
+        row.put("stops", 0L);
+        row.put("stoppedSeconds", 0.0);
+        row.put("inProgress", false);
+        return row;
+    }
+
+    private Map<String, Object> dto(Trip t) {
+        var m = new LinkedHashMap<String, Object>();
+        m.put("startTime", t.getStartTime().toInstant().toString());
+        m.put("endTime", t.getEndTime().toInstant().toString());
+        m.put("startLat", t.getStartLat());
+        m.put("startLon", t.getStartLon());
+        m.put("endLat", t.getEndLat());
+        m.put("endLon", t.getEndLon());
+        m.put("distanceM", t.getDistanceM());
+        m.put("maxSpeedKph", t.getMaxSpeedKph());
+        return m;
+    }
+
+    private Map<String, Object> dto(Stop s) {
+        return Map.of(
+                "startTime", s.getStartTime().toInstant().toString(),
+                "endTime", s.getEndTime().toInstant().toString(),
+                "lat", s.getLat(),
+                "lon", s.getLon(),
+                "durationSeconds", java.time.Duration.between(s.getStartTime(), s.getEndTime()).getSeconds()
+        );
+    }
+}
@@ -0,0 +1,134 @@
+package com.gps.enlace.device;
+
+import com.gps.enlace.domain.Device;
+import com.gps.enlace.repo.DeviceRepo;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Directorio de dispositivos en memoria: traccarDeviceId ↔ Device y userId → devices.
+ * Se carga completo al arrancar y luego se refresca por marca de agua (updated_at);
+ * las escrituras hechas por la propia app se publican con {@link #put(Device)}.
+ * La marca de agua no ve los DELETE: una conciliación periódica contra los ids de la tabla
+ * retira los borrados, y quien choque con uno antes puede retirarlo con {@link #evict(Device)}.
+ */
+@Component
+public class DeviceDirectory {
+    private final DeviceRepo repo;
+
+    private final ConcurrentHashMap<Long, Device> byTraccarId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Set<Long>> traccarIdsByUser = new ConcurrentHashMap<>();
+
+    private volatile OffsetDateTime watermark;
+
+    // solapamiento para no perder filas de transacciones que confirmaron tarde
+    @Value("${devices.directory.refresh-overlap-seconds:30}")
+    private int overlapSeconds;
+
+    public DeviceDirectory(DeviceRepo repo) {
+        this.repo = repo;
+    }
+
+    @PostConstruct
+    public void load() {
+        List<Device> all = repo.findAll();
+        all.forEach(this::put);
+        watermark = all.stream().map(Device::getUpdatedAt).max(Comparator.naturalOrder()).orElse(null);
+        System.out.println("[DEVICE_DIR] Loaded " + all.size() + " devices");
+    }
+
+    @Scheduled(fixedDelayString = "${devices.directory.refresh-ms:5000}")
+    public void refresh() {
+        try {
+            OffsetDateTime since = watermark != null
+                    ? watermark.minusSeconds(overlapSeconds)
+                    : OffsetDateTime.parse("1970-01-01T00:00:00Z");
+            for (Device d : repo.findByUpdatedAtAfterOrderByUpdatedAtAsc(since)) {
+                put(d);
+                if (watermark == null || d.getUpdatedAt().isAfter(watermark)) watermark = d.getUpdatedAt();
+            }
+        } catch (Exception e) {
+            System.err.println("[DEVICE_DIR] Refresh failed: " + e.getMessage());
+        }
+    }
+
+    // DELETE no mueve updated_at: comparar contra los ids vivos. Solo se retiran las entradas
+    // tomadas antes de la consulta, así un put() concurrente de un dispositivo nuevo no se pierde.
+    @Scheduled(fixedDelayString = "${devices.directory.reconcile-ms:300000}",
+               initialDelayString = "${devices.directory.reconcile-ms:300000}")
+    public void reconcile() {
+        try {
+            Map<Long, Device> snapshot = new HashMap<>(byTraccarId);
+            Set<Long> alive = new HashSet<>(repo.findAllIds());
+            int evicted = 0;
+            for (Device d : snapshot.values()) {
+                if (d.getId() != null && !alive.contains(d.getId()) && evict(d)) evicted++;
+            }
+            if (evicted > 0) System.out.println("[DEVICE_DIR] Evicted " + evicted + " deleted devices");
+        } catch (Exception e) {
+            System.err.println("[DEVICE_DIR] Reconcile failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Retira un dispositivo que ya no existe en la base. Solo actúa si la entrada sigue siendo
+     * esa misma instancia (no pisa un put() más reciente).
+     * @return true si se retiró
+     */
+    public boolean evict(Device d) {
+        if (d.getTraccarDeviceId() == null) return false;
+        Long traccarId = d.getTraccarDeviceId();
+        if (!byTraccarId.remove(traccarId, d)) return false;
+        if (d.getUserId() != null) {
+            traccarIdsByUser.computeIfPresent(d.getUserId(), (u, ids) -> {
+                ids.remove(traccarId);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+        return true;
+    }
+
+    /** Registra o actualiza un dispositivo; mantiene ambos índices coherentes. */
+    public void put(Device d) {
+        if (d.getTraccarDeviceId() == null) return;
+        Long traccarId = d.getTraccarDeviceId();
+        Device prev = byTraccarId.put(traccarId, d);
+        if (prev != null && prev.getUserId() != null && !prev.getUserId().equals(d.getUserId())) {
+            traccarIdsByUser.computeIfPresent(prev.getUserId(), (u, ids) -> {
+                ids.remove(traccarId);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+        if (d.getUserId() != null) {
+            traccarIdsByUser.computeIfAbsent(d.getUserId(), u -> ConcurrentHashMap.newKeySet()).add(traccarId);
+        }
+    }
+
+    public Optional<Device> findByTraccarDeviceId(long traccarDeviceId) {
+        return Optional.ofNullable(byTraccarId.get(traccarDeviceId));
+    }
+
+    public List<Device> findAllByUserId(long userId) {
+        Set<Long> ids = traccarIdsByUser.get(userId);
+        if (ids == null) return List.of();
+        return ids.stream()
+                .map(byTraccarId::get)
+                .filter(d -> d != null)
+                .sorted(Comparator.comparing(Device::getId))
+                .toList();
+    }
+
+    public int size() { return byTraccarId.size(); }
+}
@@ -10,7 +10,8 @@ import java.time.OffsetDateTime;
 @Data
 public class Device {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "device_seq")
+    @SequenceGenerator(name = "device_seq", sequenceName = "device_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "traccar_device_id", nullable = false, unique = true)
@@ -22,6 +23,9 @@ public class Device {
     @Column(name = "created_at", nullable = false, columnDefinition = "timestamptz")
     private OffsetDateTime createdAt = OffsetDateTime.now();
 
+    @Column(name = "updated_at", nullable = false, columnDefinition = "timestamptz")
+    private OffsetDateTime updatedAt = OffsetDateTime.now();
+
     @Column(name = "user_id")
     private Long userId;
 }
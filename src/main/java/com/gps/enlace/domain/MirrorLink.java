@@ -10,7 +10,8 @@ import java.time.OffsetDateTime;
 @Data
 public class MirrorLink {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "mirror_link_seq")
+    @SequenceGenerator(name = "mirror_link_seq", sequenceName = "mirror_link_id_seq", allocationSize = 50)
     private Long id;
 
     // token opaco (64 chars)
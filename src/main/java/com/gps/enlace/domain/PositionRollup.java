@@ -0,0 +1,40 @@
+package com.gps.enlace.domain;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.OffsetDateTime;
+
+@Entity
+@Table(name = "position_rollup")
+@Data
+public class PositionRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "position_rollup_seq")
+    @SequenceGenerator(name = "position_rollup_seq", sequenceName = "position_rollup_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "traccar_device_id", nullable = false)
+    private Long traccarDeviceId;
+
+    @Column(name = "resolution_s", nullable = false)
+    private Integer resolutionSeconds;
+
+    @Column(name = "bucket_start", nullable = false, columnDefinition = "timestamptz")
+    private OffsetDateTime bucketStart;
+
+    @Column(name = "fix_time", nullable = false, columnDefinition = "timestamptz")
+    private OffsetDateTime fixTime;
+
+    @Column(name = "lat", nullable = false)
+    private Double lat;
+
+    @Column(name = "lon", nullable = false)
+    private Double lon;
+
+    @Column(name = "speed_kph")
+    private Double speedKph;
+
+    @Column(name = "heading_deg")
+    private Double headingDeg;
+}
@@ -0,0 +1,31 @@
+package com.gps.enlace.domain;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.OffsetDateTime;
+
+@Entity
+@Table(name = "stop")
+@Data
+public class Stop {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stop_seq")
+    @SequenceGenerator(name = "stop_seq", sequenceName = "stop_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "traccar_device_id", nullable = false)
+    private Long traccarDeviceId;
+
+    @Column(name = "start_time", nullable = false, columnDefinition = "timestamptz")
+    private OffsetDateTime startTime;
+
+    @Column(name = "end_time", nullable = false, columnDefinition = "timestamptz")
+    private OffsetDateTime endTime;
+
+    @Column(name = "lat", nullable = false)
+    private Double lat;
+
+    @Column(name = "lon", nullable = false)
+    private Double lon;
+}
@@ -0,0 +1,43 @@
+package com.gps.enlace.domain;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.OffsetDateTime;
+
+@Entity
+@Table(name = "trip")
+@Data
+public class Trip {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trip_seq")
+    @SequenceGenerator(name = "trip_seq", sequenceName = "trip_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "traccar_device_id", nullable = false)
+    private Long traccarDeviceId;
+
+    @Column(name = "start_time", nullable = false, columnDefinition = "timestamptz")
+    private OffsetDateTime startTime;
+
+    @Column(name = "end_time", nullable = false, columnDefinition = "timestamptz")
+    private OffsetDateTime endTime;
+
+    @Column(name = "start_lat", nullable = false)
+    private Double startLat;
+
+    @Column(name = "start_lon", nullable = false)
+    private Double startLon;
+
+    @Column(name = "end_lat", nullable = false)
+    private Double endLat;
+
+    @Column(name = "end_lon", nullable = false)
+    private Double endLon;
+
+    @Column(name = "distance_m", nullable = false)
+    private Double distanceM;
+
+    @Column(name = "max_speed_kph")
+    private Double maxSpeedKph;
+}
@@ -0,0 +1,66 @@
+package com.gps.enlace.domain;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.OffsetDateTime;
+
+/** Foto persistida del estado de TripTracker de un dispositivo (ver V7); se escribe con upsertAll. */
+@Entity
+@Table(name = "trip_state")
+@Data
+public class TripState {
+    @Id
+    @Column(name = "traccar_device_id")
+    private Long traccarDeviceId;
+
+    @Column(name = "motion", nullable = false, length = 16)
+    private String motion;
+
+    @Column(name = "odometer_m", nullable = false)
+    private Double odometerM;
+
+    @Column(name = "last_time", nullable = false, columnDefinition = "timestamptz")
+    private OffsetDateTime lastTime;
+
+    @Column(name = "last_lat", nullable = false)
+    private Double lastLat;
+
+    @Column(name = "last_lon", nullable = false)
+    private Double lastLon;
+
+    @Column(name = "last_speed_kph")
+    private Double lastSpeedKph;
+
+    // inicio del viaje (MOVING) o de la parada (STOPPED) en curso
+    @Column(name = "segment_start_time", nullable = false, columnDefinition = "timestamptz")
+    private OffsetDateTime segmentStartTime;
+
+    @Column(name = "segment_start_lat", nullable = false)
+    private Double segmentStartLat;
+
+    @Column(name = "segment_start_lon", nullable = false)
+    private Double segmentStartLon;
+
+    @Column(name = "segment_start_odometer_m", nullable = false)
+    private Double segmentStartOdometerM;
+
+    @Column(name = "max_speed_kph", nullable = false)
+    private Double maxSpeedKph;
+
+    // posible cambio de estado aún sin confirmar (parada candidata o arranque candidato)
+    @Column(name = "pending_time", columnDefinition = "timestamptz")
+    private OffsetDateTime pendingTime;
+
+    @Column(name = "pending_lat")
+    private Double pendingLat;
+
+    @Column(name = "pending_lon")
+    private Double pendingLon;
+
+    @Column(name = "pending_odometer_m")
+    private Double pendingOdometerM;
+
+    @Column(name = "updated_at", nullable = false, columnDefinition = "timestamptz")
+    private OffsetDateTime updatedAt;
+}
@@ -1,22 +1,42 @@
 package com.gps.enlace.health;
 
+import com.gps.enlace.ingest.IngestPipeline;
 import com.gps.enlace.live.PositionCache;
+import com.gps.enlace.traccar.TraccarClient;
+import com.gps.enlace.traccar.TraccarSource;
 import org.springframework.boot.actuate.health.Health;
 import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Component
 public class TraccarFeedHealth implements HealthIndicator {
-    private final PositionCache cache;
+    private final TraccarClient traccar;
+    private final IngestPipeline pipeline;
 
-    public TraccarFeedHealth(PositionCache cache) { this.cache = cache; }
+    public TraccarFeedHealth(TraccarClient traccar, IngestPipeline pipeline) {
+        this.traccar = traccar;
+        this.pipeline = pipeline;
+    }
 
     @Override
     public Health health() {
-        return switch (cache.getState()) {
-            case OK -> Health.up().build();
-            case RECONNECTING -> Health.status("RECONNECTING").build();
-            case DOWN -> Health.down().build();
-        };
+        var sources = traccar.health();
+        long ok = sources.stream().filter(s -> s.state() == PositionCache.State.OK).count();
+        boolean reconnecting = sources.stream().anyMatch(s -> s.state() == PositionCache.State.RECONNECTING);
+
+        Health.Builder b;
+        if (ok == sources.size()) b = Health.up();
+        else if (ok > 0) b = Health.status("DEGRADED");
+        else if (reconnecting) b = Health.status("RECONNECTING");
+        else b = Health.down();
+
+        Map<String, TraccarSource.Health> bySource = new LinkedHashMap<>();
+        sources.forEach(s -> bySource.put(s.id(), s));
+        return b.withDetail("sources", bySource)
+                .withDetail("ingest", pipeline.stats())
+                .build();
     }
 }
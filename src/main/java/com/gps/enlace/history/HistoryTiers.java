@@ -0,0 +1,227 @@
+package com.gps.enlace.history;
+
+import com.gps.enlace.domain.PositionRollup;
+import com.gps.enlace.live.LiveFix;
+import com.gps.enlace.live.LiveFixListener;
+import com.gps.enlace.repo.PositionRollupRepo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mantiene el historial a varias resoluciones (history.tiers-seconds) de forma incremental:
+ * cada fix cae en el bucket abierto de cada nivel y, al cerrarse, el bucket guarda
+ * sus puntos primero, último y extremos en position_rollup. Cada nivel se poda pasado su
+ * horizonte (history.retention-hours, en el mismo orden que los niveles).
+ */
+@Component
+public class HistoryTiers implements LiveFixListener {
+
+    private final PositionRollupRepo repo;
+    private final int[] tiers;
+    private final long[] retentionHours;
+    // deviceId → buckets abiertos y último bucket cerrado, por nivel (mismo orden que tiers)
+    private final ConcurrentHashMap<Long, DeviceTiers> open = new ConcurrentHashMap<>();
+
+    // un bucket sin fixes nuevos durante su resolución + gracia se cierra aunque no llegue el siguiente
+    @Value("${history.idle-flush-grace-seconds:30}")
+    private long idleGraceSeconds;
+
+    public HistoryTiers(PositionRollupRepo repo,
+                        @Value("${history.tiers-seconds:60,600}") int[] tiers,
+                        @Value("${history.retention-hours:168,2160}") long[] retentionHours) {
+        this.repo = repo;
+        this.tiers = tiers.clone();
+        Arrays.sort(this.tiers);
+        // si faltan valores, los niveles más gruesos heredan el último
+        this.retentionHours = new long[this.tiers.length];
+        for (int i = 0; i < this.tiers.length; i++) {
+            this.retentionHours[i] = retentionHours.length == 0 ? 0
+                    : retentionHours[Math.min(i, retentionHours.length - 1)];
+        }
+    }
+
+    // un fix atrasado (backlog tras perder cobertura) de un bucket ya escrito no debe reabrirlo:
+    // tras un reinicio se recuerda el último bucket guardado de cada dispositivo y nivel
+    @PostConstruct
+    public void load() {
+        try {
+            int n = 0;
+            for (PositionRollupRepo.LastBucket lb : repo.findLastBuckets()) {
+                int i = Arrays.binarySearch(tiers, lb.getResolutionSeconds());
+                if (i < 0) continue;
+                DeviceTiers dt = open.computeIfAbsent(lb.getTraccarDeviceId(), id -> new DeviceTiers(tiers.length));
+                dt.closedUpTo[i] = Math.max(dt.closedUpTo[i], lb.getLastBucketStart().toEpochSecond());
+                n++;
+            }
+            System.out.println("[HISTORY] Restored " + n + " last-bucket marks");
+        } catch (Exception e) {
+            System.err.println("[HISTORY] Restore of last buckets failed: " + e.getMessage());
+        }
+    }
+
+    /** Resoluciones en segundos, de la más fina a la más gruesa. */
+    public int[] tiers() { return tiers.clone(); }
+
+    @Override
+    public void onFix(LiveFix fix) {
+        onFixes(List.of(fix));
+    }
+
+    @Override
+    public void onFixes(List<LiveFix> batch) {
+        List<PositionRollup> closed = new ArrayList<>();
+        for (LiveFix fix : batch) add(fix, closed);
+        persist(closed);
+    }
+
+    private void add(LiveFix fix, List<PositionRollup> closed) {
+        DeviceTiers dt = open.computeIfAbsent(fix.traccarDeviceId, id -> new DeviceTiers(tiers.length));
+        synchronized (dt) {
+            for (int i = 0; i < tiers.length; i++) {
+                long start = Math.floorDiv(fix.fixTime.getEpochSecond(), tiers[i]) * tiers[i];
+                if (start <= dt.closedUpTo[i]) continue; // fix atrasado: ese bucket ya se escribió
+                Bucket b = dt.buckets[i];
+                if (b != null && start < b.startEpoch) continue;
+                if (b != null && start > b.startEpoch) {
+                    closed.addAll(dt.close(i, fix.traccarDeviceId, tiers[i]));
+                    b = null;
+                }
+                if (b == null) dt.buckets[i] = b = new Bucket(start);
+                b.add(fix);
+            }
+        }
+    }
+
+    /** Puntos del bucket aún abierto, para completar la cola de un rango reciente. */
+    public List<LiveFix> openPoints(long deviceId, int resolutionSeconds) {
+        DeviceTiers dt = open.get(deviceId);
+        if (dt == null) return List.of();
+        synchronized (dt) {
+            for (int i = 0; i < tiers.length; i++) {
+                if (tiers[i] == resolutionSeconds && dt.buckets[i] != null) return dt.buckets[i].points();
+            }
+        }
+        return List.of();
+    }
+
+    @Scheduled(fixedDelayString = "${history.idle-flush-ms:30000}")
+    public void flushIdle() {
+        flush(false);
+    }
+
+    private void flush(boolean all) {
+        long now = System.currentTimeMillis();
+        List<PositionRollup> closed = new ArrayList<>();
+        open.forEach((deviceId, dt) -> {
+            synchronized (dt) {
+                for (int i = 0; i < tiers.length; i++) {
+                    Bucket b = dt.buckets[i];
+                    if (b != null && (all || now - b.touchedAtMs > (tiers[i] + idleGraceSeconds) * 1000)) {
+                        closed.addAll(dt.close(i, deviceId, tiers[i]));
+                    }
+                }
+            }
+        });
+        persist(closed);
+    }
+
+    @Scheduled(fixedDelayString = "${history.prune-ms:3600000}", initialDelayString = "${history.prune-ms:3600000}")
+    public void prune() {
+        for (int i = 0; i < tiers.length; i++) {
+            if (retentionHours[i] <= 0) continue; // 0 = sin poda
+            OffsetDateTime before = OffsetDateTime.now(ZoneOffset.UTC).minusHours(retentionHours[i]);
+            try {
+                int n = repo.deleteOlderThan(tiers[i], before);
+                if (n > 0) System.out.println("[HISTORY] Pruned " + n + " rows of tier " + tiers[i] + "s");
+            } catch (Exception e) {
+                System.err.println("[HISTORY] Prune failed for tier " + tiers[i] + "s: " + e.getMessage());
+            }
+        }
+    }
+
+    private void persist(List<PositionRollup> rows) {
+        if (rows.isEmpty()) return;
+        try { repo.saveAll(rows); }
+        catch (Exception e) { System.err.println("[HISTORY] Persist failed: " + e.getMessage()); }
+    }
+
+    // al apagar se guardan también los buckets abiertos, aunque queden parciales
+    @PreDestroy
+    public void shutdown() {
+        flush(true);
+    }
+
+    private static final class DeviceTiers {
+        final Bucket[] buckets;
+        final long[] closedUpTo; // bucketStart (epoch s) del último bucket escrito, por nivel
+
+        DeviceTiers(int n) {
+            buckets = new Bucket[n];
+            closedUpTo = new long[n];
+            Arrays.fill(closedUpTo, Long.MIN_VALUE);
+        }
+
+        List<PositionRollup> close(int i, long deviceId, int resolutionSeconds) {
+            Bucket b = buckets[i];
+            buckets[i] = null;
+            closedUpTo[i] = Math.max(closedUpTo[i], b.startEpoch);
+            return b.toRows(deviceId, resolutionSeconds);
+        }
+    }
+
+    private static final class Bucket {
+        final long startEpoch;
+        long touchedAtMs;
+        LiveFix first, last, north, south, east, west;
+
+        Bucket(long startEpoch) { this.startEpoch = startEpoch; }
+
+        void add(LiveFix f) {
+            touchedAtMs = System.currentTimeMillis();
+            if (first == null || f.fixTime.isBefore(first.fixTime)) first = f;
+            if (last == null || !f.fixTime.isBefore(last.fixTime)) last = f;
+            if (north == null || f.lat > north.lat) north = f;
+            if (south == null || f.lat < south.lat) south = f;
+            if (east == null || f.lon > east.lon) east = f;
+            if (west == null || f.lon < west.lon) west = f;
+        }
+
+        /** Hasta 6 puntos distintos, ordenados por tiempo. */
+        List<LiveFix> points() {
+            List<LiveFix> out = new ArrayList<>(6);
+            for (LiveFix f : new LiveFix[]{first, north, south, east, west, last}) {
+                if (f != null && out.stream().noneMatch(o -> o.fixTime.equals(f.fixTime))) out.add(f);
+            }
+            out.sort(Comparator.comparing(f -> f.fixTime));
+            return out;
+        }
+
+        List<PositionRollup> toRows(long deviceId, int resolutionSeconds) {
+            var bucketStart = Instant.ofEpochSecond(startEpoch).atOffset(ZoneOffset.UTC);
+            return points().stream().map(f -> {
+                PositionRollup r = new PositionRollup();
+                r.setTraccarDeviceId(deviceId);
+                r.setResolutionSeconds(resolutionSeconds);
+                r.setBucketStart(bucketStart);
+                r.setFixTime(f.fixTime.atOffset(ZoneOffset.UTC));
+                r.setLat(f.lat);
+                r.setLon(f.lon);
+                r.setSpeedKph(f.speedKph);
+                r.setHeadingDeg(f.headingDeg);
+                return r;
+            }).toList();
+        }
+    }
+}
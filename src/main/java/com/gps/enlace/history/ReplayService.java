@@ -0,0 +1,223 @@
+package com.gps.enlace.history;
+
+import com.gps.enlace.live.LiveFix;
+import com.gps.enlace.traccar.TraccarClient;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reproducción de recorridos del lado servidor: emite fixes históricos por SSE al ritmo
+ * (tiempo real / speed), leyendo la ruta por tramos (chunks) alineados a través de fetchRoute.
+ * Cada reproducción es solo un cursor con un buffer de un tramo; todas comparten un scheduler.
+ * Pausa, salto y velocidad se controlan reconectando con otros parámetros (el id de cada evento
+ * es su fixTime, así Last-Event-ID sirve para reanudar).
+ */
+@Service
+public class ReplayService {
+
+    private final TraccarClient traccar;
+    private final ScheduledExecutorService scheduler;
+
+    @Value("${replay.chunk-minutes:15}")
+    private int chunkMinutes;
+
+    // huecos largos (vehículo parado, sin señal) no se reproducen en tiempo real
+    @Value("${replay.max-gap-ms:5000}")
+    private long maxGapMs;
+
+    @Value("${replay.prefetch-below:20}")
+    private int prefetchBelow;
+
+    // cada tramo es una llamada a Traccar: el rango de un espectador público tiene tope
+    @Value("${replay.max-hours:48}")
+    private int maxHours;
+
+    public ReplayService(TraccarClient traccar, @Value("${replay.threads:2}") int threads) {
+        this.traccar = traccar;
+        this.scheduler = Executors.newScheduledThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "replay");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Horas pedidas acotadas a [1, replay.max-hours]. */
+    public int clampHours(int hours) {
+        return Math.max(1, Math.min(hours, maxHours));
+    }
+
+    /** Fin efectivo del rango: nunca en el futuro ni a más de replay.max-hours de from. */
+    public Instant clampTo(Instant from, Instant to) {
+        Instant limit = from.plusSeconds((long) maxHours * 3600);
+        if (to.isAfter(limit)) to = limit;
+        Instant now = Instant.now();
+        return to.isAfter(now) ? now : to;
+    }
+
+    public SseEmitter start(long deviceId, Instant from, Instant to, Instant at, double speed, boolean paused) {
+        Instant cursorAt = at != null && at.isAfter(from) ? at : from;
+        SseEmitter emitter = new SseEmitter(paused ? TimeUnit.MINUTES.toMillis(30) : 0L);
+        Cursor c = new Cursor(deviceId, cursorAt, to, speed, paused, emitter);
+        emitter.onCompletion(c::cancel);
+        emitter.onTimeout(c::cancel);
+        emitter.onError(e -> c.cancel());
+        c.send("replay", Map.of(
+                "deviceId", deviceId,
+                "from", from.toString(),
+                "to", to.toString(),
+                "at", cursorAt.toString(),
+                "speed", speed,
+                "paused", paused));
+        c.load();
+        return emitter;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private final class Cursor {
+        final long deviceId;
+        final Instant to;
+        final double speed;
+        final boolean paused;
+        final SseEmitter emitter;
+        final ArrayDeque<LiveFix> buffer = new ArrayDeque<>();
+        Instant loadedUntil;   // fin del último tramo pedido
+        Instant emittedUntil;  // último fixTime enviado (o el punto de salto)
+        boolean loading;
+        boolean stepping;
+        volatile boolean cancelled;
+
+        Cursor(long deviceId, Instant at, Instant to, double speed, boolean paused, SseEmitter emitter) {
+            this.deviceId = deviceId;
+            this.to = to;
+            this.speed = speed;
+            this.paused = paused;
+            this.emitter = emitter;
+            this.loadedUntil = at;
+            this.emittedUntil = at.minusMillis(1);
+        }
+
+        void cancel() { cancelled = true; }
+
+        synchronized void load() {
+            if (cancelled || loading || !loadedUntil.isBefore(to)) return;
+            loading = true;
+            fetchNext();
+        }
+
+        // tramos alineados a múltiplos de chunk-minutes para que varios espectadores compartan la llamada
+        private synchronized void fetchNext() {
+            if (cancelled) return;
+            long chunkSec = chunkMinutes * 60L;
+            Instant chunkStart = loadedUntil;
+            Instant chunkEnd = Instant.ofEpochSecond((Math.floorDiv(chunkStart.getEpochSecond(), chunkSec) + 1) * chunkSec);
+            if (chunkEnd.isAfter(to)) chunkEnd = to;
+            Instant end = chunkEnd;
+            traccar.fetchRoute(deviceId, chunkStart, end).subscribe(
+                    points -> onChunk(points, end),
+                    e -> {
+                        send("error", Map.of("error", "TRACCAR_ROUTE_FAILED"));
+                        emitter.complete();
+                    });
+        }
+
+        synchronized void onChunk(List<LiveFix> points, Instant end) {
+            // los tramos comparten el instante del borde: un fix justo ahí puede seguir en el buffer
+            Instant after = buffer.isEmpty() ? emittedUntil : buffer.peekLast().fixTime;
+            for (LiveFix f : points) {
+                if (f.fixTime.isAfter(after) && !f.fixTime.isAfter(to)) {
+                    buffer.add(f);
+                    after = f.fixTime;
+                }
+            }
+            loadedUntil = end;
+            if (buffer.isEmpty() && loadedUntil.isBefore(to)) {
+                // tramo vacío: el siguiente va por el scheduler; si el resultado ya estaba en caché,
+                // subscribe() completa en este mismo hilo y llamar aquí recursaría una vez por tramo
+                try { scheduler.execute(this::fetchNext); }
+                catch (RejectedExecutionException e) { cancel(); }
+                return;
+            }
+            loading = false;
+            if (!stepping) schedule(0);
+        }
+
+        private void schedule(long delayMs) {
+            stepping = true;
+            scheduler.schedule(this::step, delayMs, TimeUnit.MILLISECONDS);
+        }
+
+        // stepping sigue en true mientras dura step(): si load() completa en este mismo hilo
+        // (tramo en caché), onChunk no debe arrancar una segunda cadena de pasos
+        synchronized void step() {
+            if (cancelled) {
+                stepping = false;
+                return;
+            }
+            LiveFix f = buffer.poll();
+            if (f == null) {
+                stepping = false;
+                if (loading) return; // onChunk reanuda
+                send("end", Map.of("at", emittedUntil.toString()));
+                emitter.complete();
+                return;
+            }
+            sendFix(f);
+            emittedUntil = f.fixTime;
+            if (paused) {
+                stepping = false;
+                send("paused", Map.of("at", f.fixTime.toString()));
+                return;
+            }
+            if (buffer.size() < prefetchBelow) load();
+            LiveFix next = buffer.peek();
+            if (next == null) {
+                if (loading) stepping = false; // onChunk reanuda
+                else schedule(0);              // fin del rango
+                return;
+            }
+            long gapMs = Duration.between(f.fixTime, next.fixTime).toMillis();
+            schedule(Math.min(maxGapMs, Math.max(0, (long) (gapMs / speed))));
+        }
+
+        private void sendFix(LiveFix f) {
+            Map<String, Object> m = new HashMap<>();
+            m.put("lat", f.lat);
+            m.put("lon", f.lon);
+            m.put("speedKph", f.speedKph);
+            m.put("headingDeg", f.headingDeg);
+            m.put("fixTime", f.fixTime.toString());
+            m.put("deviceId", f.traccarDeviceId);
+            try {
+                emitter.send(SseEmitter.event().id(f.fixTime.toString()).name("position").data(m));
+            } catch (IOException | IllegalStateException e) {
+                cancel();
+            }
+        }
+
+        void send(String name, Object data) {
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data));
+            } catch (IOException | IllegalStateException e) {
+                cancel();
+            }
+        }
+    }
+}
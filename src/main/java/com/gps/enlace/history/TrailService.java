@@ -0,0 +1,131 @@
+package com.gps.enlace.history;
+
+import com.gps.enlace.live.LiveFix;
+import com.gps.enlace.repo.PositionRollupRepo;
+import com.gps.enlace.traccar.TraccarClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Resuelve un trail eligiendo el nivel de historial: el más fino cuyo número estimado de puntos
+ * cabe en el presupuesto. Si el nivel aún no llega al inicio del rango, solo ese tramo inicial
+ * se pide crudo a Traccar (resolución "raw+60s"); sin niveles, todo va crudo ("raw").
+ * El rango se acota a history.max-hours y el presupuesto de puntos a history.max-points; lo que va
+ * crudo a Traccar (rango entero o tramo inicial) nunca pasa de history.max-raw-hours.
+ */
+@Service
+public class TrailService {
+
+    public record Trail(String resolution, List<LiveFix> points) {}
+
+    private final TraccarClient traccar;
+    private final HistoryTiers tiers;
+    private final PositionRollupRepo repo;
+
+    // intervalo nominal de reporte de los equipos, para estimar puntos crudos
+    @Value("${history.raw-interval-seconds:5}")
+    private int rawIntervalSeconds;
+
+    // puntos promedio que deja un bucket cerrado (entre 1 y 6)
+    @Value("${history.points-per-bucket:3}")
+    private int pointsPerBucket;
+
+    // tope (y valor por defecto) del maxPoints que pide el cliente
+    @Value("${history.max-points:2000}")
+    private int maxPointsCap;
+
+    // rango servible desde los niveles
+    @Value("${history.max-hours:2160}")
+    private int maxHours;
+
+    // tope duro de lo que se pide crudo a Traccar
+    @Value("${history.max-raw-hours:168}")
+    private int maxRawHours;
+
+    public TrailService(TraccarClient traccar, HistoryTiers tiers, PositionRollupRepo repo) {
+        this.traccar = traccar;
+        this.tiers = tiers;
+        this.repo = repo;
+    }
+
+    /** Horas pedidas acotadas a [1, history.max-hours]. */
+    public int clampHours(int hours) {
+        return Math.max(1, Math.min(hours, maxHours));
+    }
+
+    /**
+     * @param requestedMaxPoints null = history.max-points; nunca por encima de ese tope
+     */
+    public Trail trail(long deviceId, Instant from, Instant to, Integer requestedMaxPoints) {
+        int maxPoints = requestedMaxPoints == null
+                ? maxPointsCap
+                : Math.max(2, Math.min(requestedMaxPoints, maxPointsCap));
+        Instant earliestAllowed = to.minusSeconds((long) maxHours * 3600);
+        if (from.isBefore(earliestAllowed)) from = earliestAllowed;
+        if (from.isAfter(to)) from = to;
+        long rangeSec = Math.max(1, Duration.between(from, to).getSeconds());
+
+        if (rangeSec / Math.max(1, rawIntervalSeconds) > maxPoints) {
+            Integer chosen = null;
+            Instant tierFrom = null;
+            for (int res : tiers.tiers()) {
+                Optional<Instant> earliest = repo.findEarliest(deviceId, res).map(OffsetDateTime::toInstant);
+                if (earliest.isEmpty() || !earliest.get().isBefore(to)) continue;
+                chosen = res;
+                // el nivel cubre el rango si tiene datos desde (al menos) un bucket después del inicio
+                tierFrom = earliest.get().isAfter(from.plusSeconds(res)) ? earliest.get() : from;
+                if (rangeSec / res * pointsPerBucket <= maxPoints) break;
+            }
+            if (chosen != null) {
+                List<LiveFix> points = new ArrayList<>();
+                boolean rawHead = tierFrom.isAfter(from);
+                if (rawHead) {
+                    Instant headEnd = tierFrom;
+                    Instant headStart = clampRaw(from, headEnd);
+                    long headSec = Duration.between(headStart, headEnd).getSeconds();
+                    int headBudget = (int) Math.max(2, (long) maxPoints * headSec / rangeSec);
+                    List<LiveFix> head = traccar.fetchRoute(deviceId, headStart, headEnd).block();
+                    if (head != null) {
+                        points.addAll(thin(head.stream().filter(f -> f.fixTime.isBefore(headEnd)).toList(), headBudget));
+                    }
+                }
+                for (var r : repo.findRange(deviceId, chosen, tierFrom.atOffset(ZoneOffset.UTC), to.atOffset(ZoneOffset.UTC))) {
+                    points.add(new LiveFix(r.getLat(), r.getLon(), r.getSpeedKph(), r.getHeadingDeg(),
+                            r.getFixTime().toInstant(), deviceId));
+                }
+                Instant tail = points.isEmpty() ? from : points.get(points.size() - 1).fixTime;
+                for (LiveFix f : tiers.openPoints(deviceId, chosen)) {
+                    if (f.fixTime.isAfter(tail) && !f.fixTime.isAfter(to)) points.add(f);
+                }
+                return new Trail((rawHead ? "raw+" : "") + chosen + "s", thin(points, maxPoints));
+            }
+        }
+
+        List<LiveFix> raw = traccar.fetchRoute(deviceId, clampRaw(from, to), to).block();
+        return new Trail("raw", thin(raw != null ? raw : List.of(), maxPoints));
+    }
+
+    /** Inicio efectivo de un tramo crudo: a lo sumo history.max-raw-hours antes de su fin. */
+    private Instant clampRaw(Instant from, Instant to) {
+        Instant limit = to.minusSeconds((long) maxRawHours * 3600);
+        return from.isBefore(limit) ? limit : from;
+    }
+
+    /** Submuestreo uniforme conservando primer y último punto. */
+    private static List<LiveFix> thin(List<LiveFix> points, int maxPoints) {
+        int n = points.size();
+        if (maxPoints < 2 || n <= maxPoints) return points;
+        List<LiveFix> out = new ArrayList<>(maxPoints);
+        double step = (double) (n - 1) / (maxPoints - 1);
+        for (int i = 0; i < maxPoints; i++) out.add(points.get((int) Math.round(i * step)));
+        return out;
+    }
+}
@@ -0,0 +1,88 @@
+package com.gps.enlace.ingest;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cola acotada sin locks, multi-productor / multi-consumidor (algoritmo de D. Vyukov).
+ * Cada celda lleva un número de secuencia que indica si está libre para escribir o lista para leer;
+ * productores y consumidores solo compiten por un CAS sobre su propio contador.
+ */
+final class BoundedRing<T> {
+    private final int mask;
+    private final Object[] buffer;
+    private final AtomicLongArray sequence;
+    private final AtomicLong enqueuePos = new AtomicLong();
+    private final AtomicLong dequeuePos = new AtomicLong();
+
+    BoundedRing(int capacity) {
+        int cap = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1; // potencia de 2
+        this.mask = cap - 1;
+        this.buffer = new Object[cap];
+        this.sequence = new AtomicLongArray(cap);
+        for (int i = 0; i < cap; i++) sequence.set(i, i);
+    }
+
+    int capacity() { return buffer.length; }
+
+    /** @return false si está lleno */
+    boolean offer(T item) {
+        long pos = enqueuePos.get();
+        for (;;) {
+            int idx = (int) (pos & mask);
+            long dif = sequence.get(idx) - pos;
+            if (dif == 0) {
+                if (enqueuePos.compareAndSet(pos, pos + 1)) {
+                    buffer[idx] = item;
+                    sequence.set(idx, pos + 1); // publica la celda
+                    return true;
+                }
+                pos = enqueuePos.get();
+            } else if (dif < 0) {
+                return false;
+            } else {
+                pos = enqueuePos.get();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    T poll() {
+        long pos = dequeuePos.get();
+        for (;;) {
+            int idx = (int) (pos & mask);
+            long dif = sequence.get(idx) - (pos + 1);
+            if (dif == 0) {
+                if (dequeuePos.compareAndSet(pos, pos + 1)) {
+                    T item = (T) buffer[idx];
+                    buffer[idx] = null;
+                    sequence.set(idx, pos + mask + 1); // libera la celda para la siguiente vuelta
+                    return item;
+                }
+                pos = dequeuePos.get();
+            } else if (dif < 0) {
+                return null;
+            } else {
+                pos = dequeuePos.get();
+            }
+        }
+    }
+
+    int drainTo(List<T> out, int max) {
+        int n = 0;
+        T item;
+        while (n < max && (item = poll()) != null) {
+            out.add(item);
+            n++;
+        }
+        return n;
+    }
+
+    int size() {
+        long size = enqueuePos.get() - dequeuePos.get();
+        return (int) Math.max(0, Math.min(size, buffer.length));
+    }
+
+    boolean isEmpty() { return size() == 0; }
+}
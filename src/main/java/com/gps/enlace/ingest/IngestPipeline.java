@@ -0,0 +1,100 @@
+package com.gps.enlace.ingest;
+
+import com.gps.enlace.config.IngestProps;
+import com.gps.enlace.live.DeviceStatusCache;
+import com.gps.enlace.live.LiveFix;
+import com.gps.enlace.live.LiveFixListener;
+import com.gps.enlace.live.PositionCache;
+import com.gps.enlace.traccar.TraccarMessageDecoder;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Ingesta por etapas desacoplada del hilo de I/O de reactor-netty:
+ * <pre>
+ *   WS receive (n fuentes) ─▶ [frames] decode ─┬▶ [cache]  PositionCache.upsert
+ *                                              ├▶ [status] DeviceStatusCache (devices / events)
+ *                                              └▶ [fanout] LiveFixListener (viajes, historial, BD)
+ * </pre>
+ * Cada etapa tiene su cola acotada sin locks, su hilo, trabajo por lotes y política de desborde.
+ */
+@Component
+public class IngestPipeline {
+
+    /** Frame crudo tal como llegó, con el namespace de la fuente Traccar que lo envió. */
+    record RawFrame(int namespace, String json) {}
+
+    private final IngestStage<RawFrame> frames;
+    private final IngestStage<LiveFix> cacheStage;
+    private final IngestStage<DeviceStatusCache.Update> statusStage;
+    private final IngestStage<LiveFix> fanout;
+
+    public IngestPipeline(IngestProps props, TraccarMessageDecoder decoder, PositionCache cache,
+                          DeviceStatusCache deviceStatus, List<LiveFixListener> listeners, MeterRegistry registry) {
+        this.cacheStage = stage("cache", props.getCache(), batch -> batch.forEach(cache::upsert));
+        this.statusStage = stage("status", props.getStatus(), batch -> batch.forEach(deviceStatus::apply));
+        this.fanout = stage("fanout", props.getFanout(), batch -> {
+            for (LiveFixListener l : listeners) {
+                try { l.onFixes(batch); }
+                catch (Exception e) { System.err.println("❌ Listener error: " + e.getMessage()); }
+            }
+        });
+        this.frames = stage("frames", props.getFrames(), batch -> {
+            List<LiveFix> fixes = new ArrayList<>();
+            List<DeviceStatusCache.Update> status = new ArrayList<>();
+            for (RawFrame f : batch) {
+                var decoded = decoder.decode(f.namespace(), f.json());
+                fixes.addAll(decoded.fixes());
+                status.addAll(decoded.status());
+            }
+            statusStage.submitAll(status);
+            if (fixes.isEmpty()) return;
+            cacheStage.submitAll(fixes);
+            fanout.submitAll(fixes);
+        });
+
+        for (IngestStage<?> s : stages()) {
+            register(registry, s);
+            s.start();
+        }
+    }
+
+    /** Llamado desde el hilo de recepción del WebSocket: solo encola. */
+    public void submitFrame(int namespace, String json) {
+        frames.submit(new RawFrame(namespace, json));
+    }
+
+    public List<IngestStage.Stats> stats() {
+        return stages().stream().map(IngestStage::stats).toList();
+    }
+
+    // se detiene en orden de flujo para vaciar lo que ya se aceptó
+    @PreDestroy
+    public void shutdown() {
+        stages().forEach(IngestStage::stop);
+    }
+
+    private List<IngestStage<?>> stages() {
+        return List.of(frames, cacheStage, statusStage, fanout);
+    }
+
+    private static <T> IngestStage<T> stage(String name, IngestProps.Stage cfg, Consumer<List<T>> handler) {
+        return new IngestStage<>(name, cfg.getCapacity(), cfg.getOverflow(), cfg.getBatchSize(), handler);
+    }
+
+    private static void register(MeterRegistry registry, IngestStage<?> s) {
+        Gauge.builder("enlace.ingest.queue.depth", s, st -> st.stats().depth())
+                .tag("stage", s.name()).register(registry);
+        FunctionCounter.builder("enlace.ingest.dropped", s, st -> st.stats().dropped())
+                .tag("stage", s.name()).register(registry);
+        FunctionCounter.builder("enlace.ingest.processed", s, st -> st.stats().processed())
+                .tag("stage", s.name()).register(registry);
+    }
+}
@@ -0,0 +1,109 @@
+package com.gps.enlace.ingest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Etapa del pipeline de ingesta: una cola {@link BoundedRing} y un hilo propio que la vacía por lotes
+ * y entrega cada lote al handler. Expone profundidad y contadores para métricas.
+ */
+public final class IngestStage<T> {
+
+    public record Stats(String name, int depth, int capacity, long accepted, long dropped,
+                        long processed, long batches, OverflowPolicy overflow) {}
+
+    private final String name;
+    private final BoundedRing<T> ring;
+    private final OverflowPolicy overflow;
+    private final int batchSize;
+    private final Consumer<List<T>> handler;
+    private final Thread worker;
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile boolean running = true;
+    private volatile boolean parked;
+
+    public IngestStage(String name, int capacity, OverflowPolicy overflow, int batchSize, Consumer<List<T>> handler) {
+        this.name = name;
+        this.ring = new BoundedRing<>(capacity);
+        this.overflow = overflow;
+        this.batchSize = Math.max(1, batchSize);
+        this.handler = handler;
+        this.worker = new Thread(this::run, "ingest-" + name);
+        this.worker.setDaemon(true);
+    }
+
+    public void start() { worker.start(); }
+
+    public void stop() {
+        running = false;
+        LockSupport.unpark(worker);
+        try { worker.join(TimeUnit.SECONDS.toMillis(5)); }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    /** @return false si el elemento (u otro más viejo) se descartó por desborde */
+    public boolean submit(T item) {
+        boolean clean = true;
+        while (!ring.offer(item)) {
+            switch (overflow) {
+                case DROP_NEWEST -> {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+                case DROP_OLDEST -> {
+                    if (ring.poll() != null) { dropped.incrementAndGet(); clean = false; }
+                }
+                case BLOCK -> {
+                    if (!running) { dropped.incrementAndGet(); return false; }
+                    wake();
+                    LockSupport.parkNanos(50_000);
+                }
+            }
+        }
+        accepted.incrementAndGet();
+        wake();
+        return clean;
+    }
+
+    public void submitAll(List<T> items) {
+        for (T item : items) submit(item);
+    }
+
+    public Stats stats() {
+        return new Stats(name, ring.size(), ring.capacity(), accepted.get(), dropped.get(),
+                processed.get(), batches.get(), overflow);
+    }
+
+    public String name() { return name; }
+
+    private void wake() {
+        if (parked) LockSupport.unpark(worker);
+    }
+
+    private void run() {
+        List<T> batch = new ArrayList<>(batchSize);
+        while (running || !ring.isEmpty()) {
+            if (ring.drainTo(batch, batchSize) == 0) {
+                parked = true;
+                if (ring.isEmpty() && running) LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(5));
+                parked = false;
+                continue;
+            }
+            try {
+                handler.accept(batch);
+            } catch (Exception e) {
+                System.err.println("❌ Ingest stage " + name + " failed on batch of " + batch.size() + ": " + e.getMessage());
+            }
+            processed.addAndGet(batch.size());
+            batches.incrementAndGet();
+            batch.clear();
+        }
+    }
+}
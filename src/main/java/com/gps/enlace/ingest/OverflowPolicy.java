@@ -0,0 +1,11 @@
+package com.gps.enlace.ingest;
+
+/** Qué hace una etapa cuando su cola está llena. */
+public enum OverflowPolicy {
+    /** Descarta lo más viejo de la cola para hacer sitio (prioriza datos frescos). */
+    DROP_OLDEST,
+    /** Descarta el elemento entrante. */
+    DROP_NEWEST,
+    /** Espera a que haya sitio; nunca usar desde el hilo de I/O. */
+    BLOCK
+}
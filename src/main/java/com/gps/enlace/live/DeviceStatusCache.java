@@ -0,0 +1,135 @@
+package com.gps.enlace.live;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estado de cada dispositivo según los mensajes "devices" y "events" del WebSocket de Traccar
+ * (online/offline, última actualización, ignición) y sus últimos eventos en un anillo acotado.
+ * Vive junto a {@link PositionCache}; los cambios se empujan por {@link LiveEventBus}.
+ */
+@Component
+public class DeviceStatusCache {
+
+    public sealed interface Update permits StatusChange, Event {
+        long traccarDeviceId();
+    }
+
+    /** Campos nulos = sin cambio. */
+    public record StatusChange(long traccarDeviceId, String status, Instant lastUpdate, Boolean ignition) implements Update {}
+
+    public record Event(long traccarDeviceId, long id, String type, Instant eventTime, String alarm,
+                        Long geofenceId) implements Update {}
+
+    public record Snapshot(String status, Instant lastUpdate, Boolean ignition, List<Event> recentEvents) {}
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final LiveEventBus events;
+    private final int recentEvents;
+
+    public DeviceStatusCache(LiveEventBus events,
+                             @Value("${device-status.recent-events:16}") int recentEvents) {
+        this.events = events;
+        this.recentEvents = Math.max(1, recentEvents);
+    }
+
+    public void apply(Update u) {
+        Entry e = entries.computeIfAbsent(u.traccarDeviceId(), id -> new Entry(recentEvents));
+        boolean changed;
+        synchronized (e) {
+            changed = switch (u) {
+                case StatusChange s -> e.merge(s.status(), s.lastUpdate(), s.ignition());
+                case Event ev -> {
+                    e.push(ev);
+                    yield e.merge(statusFor(ev.type()), ev.eventTime(), ignitionFor(ev.type()));
+                }
+            };
+        }
+        if (u instanceof Event ev) events.publish(ev.traccarDeviceId(), "event", eventDto(ev));
+        if (changed) get(u.traccarDeviceId()).ifPresent(s -> events.publish(u.traccarDeviceId(), "device", statusDto(u.traccarDeviceId(), s)));
+    }
+
+    public Optional<Snapshot> get(long traccarDeviceId) {
+        Entry e = entries.get(traccarDeviceId);
+        if (e == null) return Optional.empty();
+        synchronized (e) {
+            return Optional.of(new Snapshot(e.status, e.lastUpdate, e.ignition, e.recent()));
+        }
+    }
+
+    public static Map<String, Object> statusDto(long traccarDeviceId, Snapshot s) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("deviceId", traccarDeviceId);
+        m.put("status", s.status());
+        m.put("lastUpdate", s.lastUpdate() != null ? s.lastUpdate().toString() : null);
+        m.put("ignition", s.ignition());
+        return m;
+    }
+
+    public static Map<String, Object> eventDto(Event ev) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("deviceId", ev.traccarDeviceId());
+        m.put("id", ev.id());
+        m.put("type", ev.type());
+        m.put("eventTime", ev.eventTime() != null ? ev.eventTime().toString() : null);
+        m.put("alarm", ev.alarm());
+        m.put("geofenceId", ev.geofenceId());
+        return m;
+    }
+
+    private static String statusFor(String eventType) {
+        if (eventType == null) return null;
+        return switch (eventType) {
+            case "deviceOnline" -> "online";
+            case "deviceOffline" -> "offline";
+            case "deviceUnknown" -> "unknown";
+            default -> null;
+        };
+    }
+
+    private static Boolean ignitionFor(String eventType) {
+        if ("ignitionOn".equals(eventType)) return Boolean.TRUE;
+        if ("ignitionOff".equals(eventType)) return Boolean.FALSE;
+        return null;
+    }
+
+    private static final class Entry {
+        String status;
+        Instant lastUpdate;
+        Boolean ignition;
+        final Event[] ring;
+        int next;
+        int size;
+
+        Entry(int capacity) { this.ring = new Event[capacity]; }
+
+        boolean merge(String status, Instant lastUpdate, Boolean ignition) {
+            boolean changed = false;
+            if (status != null && !status.equals(this.status)) { this.status = status; changed = true; }
+            if (ignition != null && !ignition.equals(this.ignition)) { this.ignition = ignition; changed = true; }
+            if (lastUpdate != null && (this.lastUpdate == null || lastUpdate.isAfter(this.lastUpdate))) this.lastUpdate = lastUpdate;
+            return changed;
+        }
+
+        void push(Event ev) {
+            ring[next] = ev;
+            next = (next + 1) % ring.length;
+            if (size < ring.length) size++;
+        }
+
+        /** Del más reciente al más antiguo. */
+        List<Event> recent() {
+            List<Event> out = new ArrayList<>(size);
+            for (int i = 1; i <= size; i++) out.add(ring[(next - i + ring.length) % ring.length]);
+            return out;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.gps.enlace.live;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rueda de tiempo con hash (estilo Varghese/Lauck): programar y cancelar son O(1),
+ * y cada tick solo recorre un slot. Los vencimientos se disparan a lo sumo un tick tarde, nunca antes.
+ * Las altas llegan por una cola concurrente y solo el hilo del tick toca los slots.
+ */
+public final class HashedWheelTimer {
+
+    public static final class Timeout {
+        private static final int PENDING = 0, CANCELLED = 1, EXPIRED = 2;
+
+        private final long deadlineMs;
+        private final Runnable task;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private long rounds;
+
+        private Timeout(long deadlineMs, Runnable task) {
+            this.deadlineMs = deadlineMs;
+            this.task = task;
+        }
+
+        /** @return true si se canceló antes de dispararse */
+        public boolean cancel() { return state.compareAndSet(PENDING, CANCELLED); }
+
+        public boolean isCancelled() { return state.get() == CANCELLED; }
+
+        private boolean expire() { return state.compareAndSet(PENDING, EXPIRED); }
+    }
+
+    private final long tickMs;
+    private final long startMs = System.currentTimeMillis();
+    private final List<ArrayDeque<Timeout>> wheel;
+    private final int mask;
+    private final ConcurrentLinkedQueue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService ticker;
+    private long tick; // solo lo usa el hilo del tick
+
+    @SuppressWarnings("unchecked")
+    public HashedWheelTimer(String name, long tickMs, int wheelSize) {
+        if (tickMs <= 0) throw new IllegalArgumentException("tickMs must be > 0");
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1; // potencia de 2
+        this.tickMs = tickMs;
+        this.wheel = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) wheel.add(new ArrayDeque<>());
+        this.mask = size - 1;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::advance, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    public Timeout schedule(long deadlineEpochMs, Runnable task) {
+        Timeout t = new Timeout(deadlineEpochMs, task);
+        pending.add(t);
+        return t;
+    }
+
+    public void stop() { ticker.shutdownNow(); }
+
+    private void advance() {
+        long nowTick = (System.currentTimeMillis() - startMs) / tickMs;
+        while (tick <= nowTick) {
+            transferPending();
+            expire(wheel.get((int) (tick & mask)));
+            tick++;
+        }
+    }
+
+    private void transferPending() {
+        Timeout t;
+        while ((t = pending.poll()) != null) {
+            if (t.isCancelled()) continue;
+            // redondeo hacia arriba: nunca se dispara antes del vencimiento
+            long target = Math.max(Math.floorDiv(t.deadlineMs - startMs + tickMs - 1, tickMs), tick);
+            t.rounds = (target - tick) / wheel.size();
+            wheel.get((int) (target & mask)).add(t);
+        }
+    }
+
+    private void expire(ArrayDeque<Timeout> slot) {
+        for (Iterator<Timeout> it = slot.iterator(); it.hasNext(); ) {
+            Timeout t = it.next();
+            if (t.isCancelled()) { it.remove(); continue; }
+            if (t.rounds > 0) { t.rounds--; continue; }
+            it.remove();
+            if (t.expire()) {
+                try { t.task.run(); }
+                catch (Exception e) { System.err.println("❌ Timer task error: " + e.getMessage()); }
+            }
+        }
+    }
+}
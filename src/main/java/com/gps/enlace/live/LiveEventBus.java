@@ -0,0 +1,99 @@
+package com.gps.enlace.live;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Pub/sub en memoria por dispositivo para empujar eventos (p.ej. "stale") a los streams SSE
+ * sin esperar al siguiente poll.
+ * publish() nunca espera a un suscriptor: cada uno tiene su propia cola acotada que se vacía
+ * en un hilo virtual, así un cliente lento no frena la rueda de stale ni el pipeline de ingesta.
+ * Si su cola se llena se descartan sus eventos más antiguos; si el listener lanza (envío fallido),
+ * el suscriptor se da de baja.
+ */
+@Component
+public class LiveEventBus {
+
+    public record LiveEvent(long traccarDeviceId, String name, Object data) {}
+
+    private final ConcurrentHashMap<Long, Set<Subscription>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService delivery = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("live-events-", 0).factory());
+    private final int queueCapacity;
+
+    public LiveEventBus(@Value("${live-events.subscriber-queue:64}") int queueCapacity) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    /** @return acción para desuscribirse */
+    public Runnable subscribe(long traccarDeviceId, Consumer<LiveEvent> listener) {
+        Subscription sub = new Subscription(traccarDeviceId, listener);
+        subscribers.computeIfAbsent(traccarDeviceId, id -> ConcurrentHashMap.newKeySet()).add(sub);
+        return sub::cancel;
+    }
+
+    public void publish(long traccarDeviceId, String name, Object data) {
+        Set<Subscription> set = subscribers.get(traccarDeviceId);
+        if (set == null) return;
+        LiveEvent ev = new LiveEvent(traccarDeviceId, name, data);
+        for (Subscription s : set) s.offer(ev);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        delivery.shutdownNow();
+    }
+
+    private final class Subscription implements Runnable {
+        final long traccarDeviceId;
+        final Consumer<LiveEvent> listener;
+        final ArrayBlockingQueue<LiveEvent> queue = new ArrayBlockingQueue<>(queueCapacity);
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile boolean active = true;
+
+        Subscription(long traccarDeviceId, Consumer<LiveEvent> listener) {
+            this.traccarDeviceId = traccarDeviceId;
+            this.listener = listener;
+        }
+
+        void offer(LiveEvent ev) {
+            while (!queue.offer(ev)) queue.poll(); // cola llena: cede el más antiguo
+            if (draining.compareAndSet(false, true)) delivery.execute(this);
+        }
+
+        @Override
+        public void run() {
+            do {
+                LiveEvent ev;
+                while (active && (ev = queue.poll()) != null) {
+                    try { listener.accept(ev); }
+                    catch (Exception e) {
+                        // envío fallido = cliente perdido: fuera, en vez de seguir escribiéndole
+                        System.err.println("❌ Subscriber error, unsubscribing: " + e.getMessage());
+                        cancel();
+                    }
+                }
+                draining.set(false);
+                // un offer() pudo llegar entre el último poll y el set(false)
+            } while (active && !queue.isEmpty() && draining.compareAndSet(false, true));
+        }
+
+        void cancel() {
+            active = false;
+            queue.clear();
+            subscribers.computeIfPresent(traccarDeviceId, (id, set) -> {
+                set.remove(this);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+}
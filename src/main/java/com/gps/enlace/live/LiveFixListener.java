@@ -0,0 +1,18 @@
+package com.gps.enlace.live;
+
+import java.util.List;
+
+/**
+ * Consumidor de cada fix ingerido desde Traccar. Las implementaciones se registran como beans y se
+ * invocan en orden de llegada por dispositivo, en lotes, desde la etapa de fan-out del pipeline de
+ * ingesta. Esa etapa corre en paralelo a la que actualiza el {@link PositionCache}: no hay garantía
+ * de que el cache ya tenga el fix cuando llega aquí.
+ */
+public interface LiveFixListener {
+    void onFix(LiveFix fix);
+
+    /** Lote de fixes en orden de llegada; sobreescribir para agrupar escrituras. */
+    default void onFixes(List<LiveFix> batch) {
+        for (LiveFix fix : batch) onFix(fix);
+    }
+}
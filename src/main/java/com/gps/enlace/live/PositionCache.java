@@ -1,35 +1,92 @@
 package com.gps.enlace.live;
 
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.time.Instant;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class PositionCache {
-    private final ConcurrentHashMap<Long, LiveFix> latest = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Entry> latest = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, HashedWheelTimer.Timeout> staleDeadlines = new ConcurrentHashMap<>();
+    private final HashedWheelTimer staleWheel;
+    private final LiveEventBus events;
+    private final long staleAfterMs;
+    private final long fixClockOffsetMs;
     private volatile State state = State.RECONNECTING;
 
     public enum State { OK, RECONNECTING, DOWN }
 
-    public void upsert(LiveFix fix) { latest.put(fix.traccarDeviceId, fix); state = State.OK; }
-    public Optional<LiveFix> get(long deviceId) { return Optional.ofNullable(latest.get(deviceId)); }
-    public void setState(State s) { this.state = s; }
-    public State getState() { return state; }
+    public PositionCache(LiveEventBus events,
+                         @Value("${position.stale-minutes:10}") int staleMinutes,
+                         // Traccar reporta fixTime en su hora local (8h detrás de UTC)
+                         @Value("${position.fix-clock-offset-seconds:28800}") long fixClockOffsetSeconds,
+                         @Value("${position.stale-wheel.tick-ms:1000}") long tickMs,
+                         @Value("${position.stale-wheel.size:1024}") int wheelSize) {
+        this.events = events;
+        this.staleAfterMs = staleMinutes * 60_000L;
+        this.fixClockOffsetMs = fixClockOffsetSeconds * 1000;
+        this.staleWheel = new HashedWheelTimer("stale-wheel", tickMs, wheelSize);
+    }
 
-    public static boolean isStale(Instant fix, int staleMinutes) {
-        if (fix == null) return true;
+    /** Último fix de un dispositivo y su bandera stale; se reemplaza entero, nunca se muta. */
+    private record Entry(LiveFix fix, boolean stale) {}
 
-        // adjust Traccar's local time (8h behind UTC) to server time
-        Instant adjustedFix = fix.plusSeconds(8 * 3600);
+    public void upsert(LiveFix fix) {
+        latest.put(fix.traccarDeviceId, new Entry(fix, false));
+        state = State.OK;
+        scheduleStale(fix);
+    }
 
-        Instant now = Instant.now();
-        long diffSec = java.time.Duration.between(adjustedFix, now).getSeconds();
-        boolean stale = now.minusSeconds((long) staleMinutes * 60).isAfter(adjustedFix);
+    public Optional<LiveFix> get(long deviceId) {
+        Entry e = latest.get(deviceId);
+        return e != null ? Optional.of(e.fix()) : Optional.empty();
+    }
+    public void setState(State s) { this.state = s; }
+    public State getState() { return state; }
 
-        return stale;
+    /** Bandera mantenida por la rueda de tiempo; sin fix se considera stale. */
+    public boolean isStale(long deviceId) {
+        Entry e = latest.get(deviceId);
+        return e == null || e.stale();
     }
 
+    // una sola entrada viva por dispositivo: cada fix cancela el vencimiento anterior,
+    // y el disparo solo cuenta si su fix sigue siendo el último
+    private void scheduleStale(LiveFix fix) {
+        long deviceId = fix.traccarDeviceId;
+        long deadline = fix.fixTime.toEpochMilli() + fixClockOffsetMs + staleAfterMs;
+        HashedWheelTimer.Timeout[] self = new HashedWheelTimer.Timeout[1];
+        self[0] = staleWheel.schedule(deadline, () -> {
+            staleDeadlines.remove(deviceId, self[0]);
+            markStale(deviceId, fix);
+        });
+        HashedWheelTimer.Timeout prev = staleDeadlines.put(deviceId, self[0]);
+        if (prev != null) prev.cancel();
+    }
 
+    // comprobar y marcar en un solo paso: un upsert concurrente reemplaza la entrada
+    // y la comparación falla, así un fix nuevo nunca queda marcado stale
+    private void markStale(long deviceId, LiveFix fix) {
+        boolean[] marked = new boolean[1];
+        latest.computeIfPresent(deviceId, (id, e) -> {
+            if (e.fix() != fix || e.stale()) return e;
+            marked[0] = true;
+            return new Entry(fix, true);
+        });
+        if (!marked[0]) return;
+        events.publish(deviceId, "stale", Map.of(
+                "deviceId", deviceId,
+                "fixTime", fix.fixTime.toString(),
+                "stale", true
+        ));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        staleWheel.stop();
+    }
 }
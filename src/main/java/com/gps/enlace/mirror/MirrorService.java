@@ -1,5 +1,6 @@
 package com.gps.enlace.mirror;
 
+import com.gps.enlace.device.DeviceDirectory;
 import com.gps.enlace.domain.Device;
 import com.gps.enlace.domain.MirrorLink;
 import com.gps.enlace.live.LiveFix;
@@ -8,10 +9,20 @@ import com.gps.enlace.repo.DeviceRepo;
 import com.gps.enlace.repo.MirrorLinkRepo;
 import org.springframework.transaction.annotation.Transactional;  // <-- this one
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class MirrorService {
@@ -19,33 +30,123 @@ public class MirrorService {
     private final DeviceRepo deviceRepo;
     private final TokenGenerator tokenGen;
     private final PositionCache cache;
+    private final DeviceDirectory directory;
 
     @Value("${mirror.token.ttl-hours:12}")
     private int defaultTtlHours;
 
-    public MirrorService(MirrorLinkRepo mirrorRepo, DeviceRepo deviceRepo, TokenGenerator tokenGen, PositionCache cache) {
+    public MirrorService(MirrorLinkRepo mirrorRepo, DeviceRepo deviceRepo, TokenGenerator tokenGen, PositionCache cache,
+                         DeviceDirectory directory) {
         this.mirrorRepo = mirrorRepo;
         this.deviceRepo = deviceRepo;
         this.tokenGen = tokenGen;
         this.cache = cache;
+        this.directory = directory;
     }
 
     public MirrorLink createForTraccarDevice(long traccarDeviceId, Integer customExpirationHours) {
         int ttlHours = customExpirationHours != null ? customExpirationHours : defaultTtlHours;
-        
-        Device d = deviceRepo.findByTraccarDeviceId(traccarDeviceId)
+
+        Device d = resolveDevice(traccarDeviceId);
+        try {
+            return mirrorRepo.save(newLink(d, ttlHours));
+        } catch (DataIntegrityViolationException e) {
+            // el directorio puede tener un dispositivo borrado después de la última conciliación
+            if (d.getId() == null || deviceRepo.existsById(d.getId())) throw e;
+            directory.evict(d);
+            return mirrorRepo.save(newLink(resolveDevice(traccarDeviceId), ttlHours));
+        }
+    }
+
+    private Device resolveDevice(long traccarDeviceId) {
+        return directory.findByTraccarDeviceId(traccarDeviceId)
                 .orElseGet(() -> {
-                    Device nd = new Device();
-                    nd.setTraccarDeviceId(traccarDeviceId);
-                    nd.setName(null);
-                    return deviceRepo.save(nd);
+                    // puede existir aunque el directorio aún no lo haya visto (otra instancia)
+                    Device found = deviceRepo.findByTraccarDeviceId(traccarDeviceId)
+                            .orElseGet(() -> {
+                                Device nd = new Device();
+                                nd.setTraccarDeviceId(traccarDeviceId);
+                                nd.setName(null);
+                                return deviceRepo.save(nd);
+                            });
+                    directory.put(found);
+                    return found;
                 });
+    }
+
+    private MirrorLink newLink(Device d, int ttlHours) {
         MirrorLink ml = new MirrorLink();
         ml.setToken(tokenGen.generate(48));
         ml.setDevice(d);
         ml.setCreatedAt(OffsetDateTime.now());
         ml.setExpiresAt(OffsetDateTime.now().plusHours(ttlHours));
-        return mirrorRepo.save(ml);
+        return ml;
+    }
+
+    /**
+     * Crea un enlace por dispositivo en una sola transacción. Los dispositivos que faltan se
+     * insertan en lote y los tokens se generan de antemano; con ids por secuencia pooled
+     * Hibernate agrupa los INSERT (hibernate.jdbc.batch_size).
+     * @return un enlace por id distinto, en el orden recibido
+     */
+    @Transactional
+    public List<MirrorLink> createBulk(List<Long> traccarDeviceIds, Integer customExpirationHours) {
+        int ttlHours = customExpirationHours != null ? customExpirationHours : defaultTtlHours;
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(traccarDeviceIds));
+
+        Map<Long, Device> devices = new HashMap<>();
+        List<Long> unknown = new ArrayList<>();
+        List<Device> fromDirectory = new ArrayList<>();
+        for (Long id : ids) {
+            directory.findByTraccarDeviceId(id).ifPresentOrElse(d -> {
+                devices.put(id, d);
+                fromDirectory.add(d);
+            }, () -> unknown.add(id));
+        }
+        // si el lote falla por un dispositivo borrado que el directorio aún tenía, retirarlo
+        // para que el reintento lo vuelva a crear
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_ROLLED_BACK || fromDirectory.isEmpty()) return;
+                Set<Long> alive = new HashSet<>();
+                deviceRepo.findAllById(fromDirectory.stream().map(Device::getId).toList())
+                        .forEach(d -> alive.add(d.getId()));
+                fromDirectory.stream().filter(d -> !alive.contains(d.getId())).forEach(directory::evict);
+            }
+        });
+        if (!unknown.isEmpty()) {
+            // puede existir aunque el directorio aún no lo haya visto (otra instancia)
+            deviceRepo.findByTraccarDeviceIdIn(unknown).forEach(d -> devices.put(d.getTraccarDeviceId(), d));
+            List<Device> created = new ArrayList<>();
+            for (Long id : unknown) {
+                if (devices.containsKey(id)) continue;
+                Device nd = new Device();
+                nd.setTraccarDeviceId(id);
+                nd.setName(null);
+                created.add(nd);
+            }
+            deviceRepo.saveAll(created).forEach(d -> devices.put(d.getTraccarDeviceId(), d));
+            List<Device> toPublish = unknown.stream().map(devices::get).toList();
+            // publicar en el directorio solo si la transacción confirma
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() { toPublish.forEach(directory::put); }
+            });
+        }
+
+        List<String> tokens = tokenGen.generate(ids.size(), 48);
+        OffsetDateTime now = OffsetDateTime.now();
+        List<MirrorLink> links = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            MirrorLink ml = new MirrorLink();
+            ml.setToken(tokens.get(i));
+            ml.setDevice(devices.get(ids.get(i)));
+            ml.setCreatedAt(now);
+            ml.setExpiresAt(now.plusHours(ttlHours));
+            links.add(ml);
+        }
+        return mirrorRepo.saveAll(links);
     }
 
     @Transactional
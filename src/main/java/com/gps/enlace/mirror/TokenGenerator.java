@@ -3,6 +3,10 @@ package com.gps.enlace.mirror;
 import org.springframework.stereotype.Component;
 
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 @Component
 public class TokenGenerator {
@@ -14,4 +18,17 @@ public class TokenGenerator {
         for (int i = 0; i < len; i++) out[i] = ALPH[rnd.nextInt(ALPH.length)];
         return new String(out);
     }
+
+    /** Genera {@code count} tokens distintos de una vez (creación masiva de enlaces). */
+    public List<String> generate(int count, int len) {
+        Set<String> seen = new HashSet<>(count * 2);
+        List<String> out = new ArrayList<>(count);
+        char[] buf = new char[len];
+        while (out.size() < count) {
+            for (int i = 0; i < len; i++) buf[i] = ALPH[rnd.nextInt(ALPH.length)];
+            String t = new String(buf);
+            if (seen.add(t)) out.add(t);
+        }
+        return out;
+    }
 }
@@ -5,13 +5,22 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface DeviceRepo extends JpaRepository<Device, Long> {
     Optional<Device> findByTraccarDeviceId(Long traccarDeviceId);
 
+    List<Device> findByTraccarDeviceIdIn(Collection<Long> traccarDeviceIds);
+
     @Query(value = "SELECT * FROM device WHERE user_id = :userId", nativeQuery = true)
     List<Device> findAllByUserId(@Param("userId") Long userId);
 
+    List<Device> findByUpdatedAtAfterOrderByUpdatedAtAsc(OffsetDateTime watermark);
+
+    @Query("SELECT d.id FROM Device d")
+    List<Long> findAllIds();
+
 }
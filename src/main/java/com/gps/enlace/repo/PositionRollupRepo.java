@@ -0,0 +1,61 @@
+package com.gps.enlace.repo;
+
+import com.gps.enlace.domain.PositionRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface PositionRollupRepo extends JpaRepository<PositionRollup, Long> {
+
+    @Query("""
+  select p
+  from PositionRollup p
+  where p.traccarDeviceId = :deviceId
+    and p.resolutionSeconds = :res
+    and p.fixTime >= :from
+    and p.fixTime <= :to
+  order by p.fixTime
+""")
+    List<PositionRollup> findRange(@Param("deviceId") long deviceId,
+                                   @Param("res") int resolutionSeconds,
+                                   @Param("from") OffsetDateTime from,
+                                   @Param("to") OffsetDateTime to);
+
+    @Query("""
+  select min(p.fixTime)
+  from PositionRollup p
+  where p.traccarDeviceId = :deviceId
+    and p.resolutionSeconds = :res
+""")
+    Optional<OffsetDateTime> findEarliest(@Param("deviceId") long deviceId, @Param("res") int resolutionSeconds);
+
+    interface LastBucket {
+        Long getTraccarDeviceId();
+        Integer getResolutionSeconds();
+        OffsetDateTime getLastBucketStart();
+    }
+
+    @Query("""
+  select p.traccarDeviceId as traccarDeviceId,
+         p.resolutionSeconds as resolutionSeconds,
+         max(p.bucketStart) as lastBucketStart
+  from PositionRollup p
+  group by p.traccarDeviceId, p.resolutionSeconds
+""")
+    List<LastBucket> findLastBuckets();
+
+    @Modifying
+    @Transactional
+    @Query("""
+  delete from PositionRollup p
+  where p.resolutionSeconds = :res
+    and p.bucketStart < :before
+""")
+    int deleteOlderThan(@Param("res") int resolutionSeconds, @Param("before") OffsetDateTime before);
+}
@@ -0,0 +1,41 @@
+package com.gps.enlace.repo;
+
+import com.gps.enlace.domain.Stop;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public interface StopRepo extends JpaRepository<Stop, Long> {
+
+    @Query("""
+  select s
+  from Stop s
+  where s.traccarDeviceId = :deviceId
+    and s.startTime < :to
+    and s.endTime > :from
+  order by s.startTime
+""")
+    List<Stop> findOverlapping(@Param("deviceId") long deviceId,
+                               @Param("from") OffsetDateTime from,
+                               @Param("to") OffsetDateTime to);
+
+    /** Paradas que se solapan con [from, to); la duración se recorta al rango. */
+    interface DeviceStopCount {
+        Long getTraccarDeviceId();
+        Long getStops();
+        Double getStoppedSeconds();
+    }
+
+    @Query(value = """
+  SELECT traccar_device_id                                                     AS traccarDeviceId,
+         COUNT(*)                                                              AS stops,
+         SUM(EXTRACT(EPOCH FROM (LEAST(end_time, :to) - GREATEST(start_time, :from)))) AS stoppedSeconds
+  FROM stop
+  WHERE start_time < :to AND end_time > :from
+  GROUP BY traccar_device_id
+""", nativeQuery = true)
+    List<DeviceStopCount> countsByDevice(@Param("from") OffsetDateTime from, @Param("to") OffsetDateTime to);
+}
@@ -0,0 +1,51 @@
+package com.gps.enlace.repo;
+
+import com.gps.enlace.domain.Trip;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public interface TripRepo extends JpaRepository<Trip, Long> {
+
+    @Query("""
+  select t
+  from Trip t
+  where t.traccarDeviceId = :deviceId
+    and t.startTime < :to
+    and t.endTime > :from
+  order by t.startTime
+""")
+    List<Trip> findOverlapping(@Param("deviceId") long deviceId,
+                               @Param("from") OffsetDateTime from,
+                               @Param("to") OffsetDateTime to);
+
+    interface DeviceTotals {
+        Long getTraccarDeviceId();
+        Long getTrips();
+        Double getDistanceM();
+        Double getMovingSeconds();
+        Double getMaxSpeedKph();
+    }
+
+    /**
+     * Totales por dispositivo de los viajes que se solapan con [from, to); los que cruzan un borde
+     * se recortan: su distancia se reparte en proporción al tiempo dentro del rango.
+     */
+    @Query(value = """
+  SELECT traccar_device_id                                                     AS traccarDeviceId,
+         COUNT(*)                                                              AS trips,
+         SUM(CASE WHEN end_time > start_time
+                  THEN distance_m * EXTRACT(EPOCH FROM (LEAST(end_time, :to) - GREATEST(start_time, :from)))
+                                  / EXTRACT(EPOCH FROM (end_time - start_time))
+                  ELSE distance_m END)                                         AS distanceM,
+         SUM(EXTRACT(EPOCH FROM (LEAST(end_time, :to) - GREATEST(start_time, :from)))) AS movingSeconds,
+         MAX(max_speed_kph)                                                    AS maxSpeedKph
+  FROM trip
+  WHERE start_time < :to AND end_time > :from
+  GROUP BY traccar_device_id
+""", nativeQuery = true)
+    List<DeviceTotals> totalsByDevice(@Param("from") OffsetDateTime from, @Param("to") OffsetDateTime to);
+}
@@ -0,0 +1,7 @@
+package com.gps.enlace.repo;
+
+import com.gps.enlace.domain.TripState;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface TripStateRepo extends JpaRepository<TripState, Long>, TripStateRepoCustom {
+}
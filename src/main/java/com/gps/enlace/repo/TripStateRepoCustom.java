@@ -0,0 +1,11 @@
+package com.gps.enlace.repo;
+
+import com.gps.enlace.domain.TripState;
+
+import java.util.List;
+
+public interface TripStateRepoCustom {
+
+    /** INSERT … ON CONFLICT DO UPDATE en un solo lote JDBC (sin el SELECT por fila de merge). */
+    void upsertAll(List<TripState> rows);
+}
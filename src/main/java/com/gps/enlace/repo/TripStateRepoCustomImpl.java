@@ -0,0 +1,54 @@
+package com.gps.enlace.repo;
+
+import com.gps.enlace.domain.TripState;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/** Fragmento de {@link TripStateRepo}: el id es asignado, así que save() pasaría por merge. */
+class TripStateRepoCustomImpl implements TripStateRepoCustom {
+
+    private static final String UPSERT = """
+  INSERT INTO trip_state (traccar_device_id, motion, odometer_m,
+                          last_time, last_lat, last_lon, last_speed_kph,
+                          segment_start_time, segment_start_lat, segment_start_lon, segment_start_odometer_m,
+                          max_speed_kph, pending_time, pending_lat, pending_lon, pending_odometer_m, updated_at)
+  VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, now())
+  ON CONFLICT (traccar_device_id) DO UPDATE SET
+      motion = EXCLUDED.motion,
+      odometer_m = EXCLUDED.odometer_m,
+      last_time = EXCLUDED.last_time,
+      last_lat = EXCLUDED.last_lat,
+      last_lon = EXCLUDED.last_lon,
+      last_speed_kph = EXCLUDED.last_speed_kph,
+      segment_start_time = EXCLUDED.segment_start_time,
+      segment_start_lat = EXCLUDED.segment_start_lat,
+      segment_start_lon = EXCLUDED.segment_start_lon,
+      segment_start_odometer_m = EXCLUDED.segment_start_odometer_m,
+      max_speed_kph = EXCLUDED.max_speed_kph,
+      pending_time = EXCLUDED.pending_time,
+      pending_lat = EXCLUDED.pending_lat,
+      pending_lon = EXCLUDED.pending_lon,
+      pending_odometer_m = EXCLUDED.pending_odometer_m,
+      updated_at = now()
+""";
+
+    private final JdbcTemplate jdbc;
+
+    TripStateRepoCustomImpl(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @Override
+    @Transactional
+    public void upsertAll(List<TripState> rows) {
+        if (rows.isEmpty()) return;
+        jdbc.batchUpdate(UPSERT, rows.stream().map(r -> new Object[]{
+                r.getTraccarDeviceId(), r.getMotion(), r.getOdometerM(),
+                r.getLastTime(), r.getLastLat(), r.getLastLon(), r.getLastSpeedKph(),
+                r.getSegmentStartTime(), r.getSegmentStartLat(), r.getSegmentStartLon(), r.getSegmentStartOdometerM(),
+                r.getMaxSpeedKph(), r.getPendingTime(), r.getPendingLat(), r.getPendingLon(), r.getPendingOdometerM()
+        }).toList());
+    }
+}
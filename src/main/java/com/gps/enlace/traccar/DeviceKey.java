@@ -0,0 +1,24 @@
+package com.gps.enlace.traccar;
+
+/**
+ * Identidad de dispositivo con espacio de nombres por fuente Traccar, empaquetada en un long:
+ * los 24 bits altos son el namespace de la fuente y los 40 bajos el deviceId remoto.
+ * El namespace 0 deja el id tal cual, así la fuente por defecto conserva los ids existentes.
+ */
+public final class DeviceKey {
+    private static final int REMOTE_BITS = 40;
+    private static final long REMOTE_MASK = (1L << REMOTE_BITS) - 1;
+    public static final int MAX_NAMESPACE = (1 << (63 - REMOTE_BITS)) - 1;
+
+    private DeviceKey() { }
+
+    public static long of(int namespace, long remoteId) {
+        if (namespace < 0 || namespace > MAX_NAMESPACE) throw new IllegalArgumentException("namespace out of range: " + namespace);
+        if (remoteId < 0 || remoteId > REMOTE_MASK) throw new IllegalArgumentException("remote device id out of range: " + remoteId);
+        return ((long) namespace << REMOTE_BITS) | remoteId;
+    }
+
+    public static int namespace(long key) { return (int) (key >>> REMOTE_BITS); }
+
+    public static long remoteId(long key) { return key & REMOTE_MASK; }
+}
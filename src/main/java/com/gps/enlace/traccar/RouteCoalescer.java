@@ -0,0 +1,88 @@
+package com.gps.enlace.traccar;
+
+import com.gps.enlace.config.TraccarProps;
+import com.gps.enlace.live.LiveFix;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+/**
+ * Single-flight para /api/reports/route: las peticiones concurrentes del mismo dispositivo y
+ * ventana (redondeada) comparten una sola llamada a Traccar y su resultado decodificado,
+ * que además queda en caché unos segundos. Las llamadas a Traccar se limitan con un semáforo
+ * justo; el resto espera en cola hasta un timeout. Cada llamada tiene además su propio timeout
+ * dentro del permiso, para que una respuesta colgada no lo retenga.
+ */
+@Component
+public class RouteCoalescer {
+
+    private record Key(long deviceId, long fromEpoch, long toEpoch) {}
+
+    private final ConcurrentHashMap<Key, Mono<List<LiveFix>>> flights = new ConcurrentHashMap<>();
+    private final Semaphore permits;
+    private final long windowSeconds;
+    private final Duration ttl;
+    private final long queueTimeoutMs;
+    private final Duration callTimeout;
+
+    public RouteCoalescer(TraccarProps props, MeterRegistry registry) {
+        this.permits = new Semaphore(Math.max(1, props.getRouteMaxConcurrent()), true);
+        this.windowSeconds = Math.max(1, props.getRouteCoalesceWindowSeconds());
+        this.ttl = Duration.ofSeconds(Math.max(0, props.getRouteResultTtlSeconds()));
+        this.queueTimeoutMs = props.getRouteQueueTimeoutMs();
+        this.callTimeout = Duration.ofMillis(Math.max(1, props.getRouteTimeoutMs()));
+
+        Gauge.builder("enlace.route.flights", flights, ConcurrentHashMap::size).register(registry);
+        Gauge.builder("enlace.route.queued", permits, Semaphore::getQueueLength).register(registry);
+    }
+
+    /**
+     * @param loader llamada real a Traccar con la ventana ya redondeada
+     * @return los puntos dentro de [from, to] pedidos por este llamador
+     */
+    public Mono<List<LiveFix>> fetch(long deviceId, Instant from, Instant to,
+                                     BiFunction<Instant, Instant, Mono<List<LiveFix>>> loader) {
+        long f = Math.floorDiv(from.getEpochSecond(), windowSeconds) * windowSeconds;
+        long t = Math.floorDiv(to.getEpochSecond() + windowSeconds - 1, windowSeconds) * windowSeconds;
+        Key key = new Key(deviceId, f, t);
+
+        return flights.computeIfAbsent(key, k -> flight(k, loader))
+                .map(list -> list.stream()
+                        .filter(p -> !p.fixTime.isBefore(from) && !p.fixTime.isAfter(to))
+                        .toList());
+    }
+
+    private Mono<List<LiveFix>> flight(Key key, BiFunction<Instant, Instant, Mono<List<LiveFix>>> loader) {
+        AtomicReference<Mono<List<LiveFix>>> self = new AtomicReference<>();
+        Mono<List<LiveFix>> upstream = acquire()
+                .then(Mono.defer(() -> loader.apply(Instant.ofEpochSecond(key.fromEpoch()), Instant.ofEpochSecond(key.toEpoch())))
+                        .timeout(callTimeout)
+                        .doFinally(sig -> permits.release()));
+
+        self.set(upstream
+                .doOnSuccess(v -> Mono.delay(ttl).subscribe(x -> flights.remove(key, self.get())))
+                .doOnError(e -> flights.remove(key, self.get()))
+                .cache());
+        return self.get();
+    }
+
+    // esperar permiso en un hilo elástico: nunca bloquear el event loop de Netty
+    private Mono<Void> acquire() {
+        return Mono.fromCallable(() -> permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(ok -> ok
+                        ? Mono.<Void>empty()
+                        : Mono.error(new IllegalStateException("Traccar route queue timeout")));
+    }
+}
@@ -0,0 +1,103 @@
+package com.gps.enlace.traccar;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gps.enlace.live.DeviceStatusCache;
+import com.gps.enlace.live.LiveFix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodifica los mensajes del WebSocket de Traccar: "positions" a {@link LiveFix},
+ * "devices" y "events" a actualizaciones de {@link DeviceStatusCache}.
+ * El deviceId se publica con el namespace de la fuente ({@link DeviceKey}).
+ */
+@Component
+public class TraccarMessageDecoder {
+    // corre en el único hilo de decode para todas las fuentes: nada de println por mensaje
+    private static final Logger log = LoggerFactory.getLogger(TraccarMessageDecoder.class);
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public record Decoded(List<LiveFix> fixes, List<DeviceStatusCache.Update> status) {}
+
+    public Decoded decode(int namespace, String json) {
+        List<LiveFix> out = new ArrayList<>();
+        List<DeviceStatusCache.Update> status = new ArrayList<>();
+        JsonNode root;
+        try {
+            if (log.isTraceEnabled()) log.trace("Raw Traccar message ns={} {}", namespace, json);
+            root = mapper.readTree(json);
+        } catch (Exception ignore) {
+            return new Decoded(out, status);
+        }
+        // Traccar envía objetos como {"positions":[{...}], "events":[...]} etc.
+        // Un elemento inválido (p.ej. id fuera de rango para DeviceKey) se salta sin tirar el resto del frame.
+        JsonNode arr = root.get("positions");
+        if (arr != null) {
+            for (JsonNode p : arr) {
+                try { position(namespace, p, out, status); }
+                catch (Exception e) { log.debug("Skipping position ns={}: {}", namespace, e.getMessage()); }
+            }
+        }
+        JsonNode devices = root.get("devices");
+        if (devices != null) {
+            for (JsonNode d : devices) {
+                try { status.add(device(namespace, d)); }
+                catch (Exception e) { log.debug("Skipping device ns={}: {}", namespace, e.getMessage()); }
+            }
+        }
+        JsonNode events = root.get("events");
+        if (events != null) {
+            for (JsonNode e : events) {
+                try { status.add(event(namespace, e)); }
+                catch (Exception ex) { log.debug("Skipping event ns={}: {}", namespace, ex.getMessage()); }
+            }
+        }
+        // El resto (heartbeats, {} vacíos) se ignora.
+        return new Decoded(out, status);
+    }
+
+    private void position(int namespace, JsonNode p, List<LiveFix> out, List<DeviceStatusCache.Update> status) {
+        long deviceId = DeviceKey.of(namespace, p.path("deviceId").asLong());
+        double lat = p.path("latitude").asDouble();
+        double lon = p.path("longitude").asDouble();
+        Double speed = p.hasNonNull("speed") ? p.get("speed").asDouble() * 1.852 /*knots→kph*/ : null;
+        Double course = p.hasNonNull("course") ? p.get("course").asDouble() : null;
+        Instant fixTime = parseTime(p.path("fixTime").asText(null));
+        if (Double.isNaN(lat) || Double.isNaN(lon) || fixTime == null) return;
+        out.add(new LiveFix(lat, lon, speed, course, fixTime, deviceId));
+        JsonNode ign = p.path("attributes").get("ignition");
+        if (ign != null && ign.isBoolean()) {
+            status.add(new DeviceStatusCache.StatusChange(deviceId, null, null, ign.asBoolean()));
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Position deviceId={} lat={} lon={} speed={} heading={} fixTime={}",
+                    deviceId, lat, lon, speed, course, fixTime);
+        }
+    }
+
+    private DeviceStatusCache.Update device(int namespace, JsonNode d) {
+        long deviceId = DeviceKey.of(namespace, d.path("id").asLong());
+        return new DeviceStatusCache.StatusChange(deviceId,
+                d.path("status").asText(null), parseTime(d.path("lastUpdate").asText(null)), null);
+    }
+
+    private DeviceStatusCache.Update event(int namespace, JsonNode e) {
+        long deviceId = DeviceKey.of(namespace, e.path("deviceId").asLong());
+        long geofenceId = e.path("geofenceId").asLong();
+        return new DeviceStatusCache.Event(deviceId, e.path("id").asLong(), e.path("type").asText(null),
+                parseTime(e.path("eventTime").asText(null)),
+                e.path("attributes").path("alarm").asText(null),
+                geofenceId != 0 ? geofenceId : null);
+    }
+
+    private Instant parseTime(String iso) {
+        try { return iso == null ? null : Instant.parse(iso); }
+        catch (Exception e) { return null; }
+    }
+}
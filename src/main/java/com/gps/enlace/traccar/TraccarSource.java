@@ -0,0 +1,211 @@
+package com.gps.enlace.traccar;
+
+import com.gps.enlace.config.TraccarProps;
+import com.gps.enlace.ingest.IngestPipeline;
+import com.gps.enlace.live.LiveFix;
+import com.gps.enlace.live.PositionCache;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Una instancia/cuenta de Traccar: su propia sesión, WebSocket, backoff y estado de salud.
+ * Los deviceId que salen de aquí ya vienen con el namespace de la fuente ({@link DeviceKey}).
+ */
+public class TraccarSource {
+
+    public record Health(String id, int namespace, String baseUrl, PositionCache.State state,
+                         Instant connectedAt, Instant lastMessageAt, long messages,
+                         long reconnects, String lastError) {}
+
+    private final TraccarProps props;
+    private final TraccarProps.Source cfg;
+    private final IngestPipeline pipeline;
+    private final Consumer<TraccarSource> onStateChange;
+    private final WebClient http;
+
+    private volatile String sessionCookie; // JSESSIONID de Traccar
+    private volatile PositionCache.State state = PositionCache.State.RECONNECTING;
+    private volatile int backoffMs;
+    private volatile Instant connectedAt;
+    private volatile Instant lastMessageAt;
+    private volatile String lastError;
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+
+    TraccarSource(TraccarProps props, TraccarProps.Source cfg, IngestPipeline pipeline,
+                  Consumer<TraccarSource> onStateChange) {
+        this.props = props;
+        this.cfg = cfg;
+        this.pipeline = pipeline;
+        this.onStateChange = onStateChange;
+        this.backoffMs = props.getWsReconnectBackoffInitialMs();
+        this.http = WebClient.builder()
+                .baseUrl(cfg.getBaseUrl())
+                .defaultHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                .codecs(c -> c.defaultCodecs().maxInMemorySize(10 * 1024 * 1024)) // ⬅ 10 MB
+                .build();
+    }
+
+    public String id() { return cfg.getId(); }
+    public int namespace() { return cfg.getNamespace(); }
+    public PositionCache.State state() { return state; }
+
+    public Health health() {
+        return new Health(cfg.getId(), cfg.getNamespace(), cfg.getBaseUrl(), state, connectedAt,
+                lastMessageAt, messages.get(), reconnects.get(), lastError);
+    }
+
+    void start() {
+        loginAndConnect();
+    }
+
+    private void loginAndConnect() {
+        login().flatMap(cookie -> {
+            this.sessionCookie = cookie;
+            return connectWebSocket();
+        }).subscribe(
+                v -> { },
+                e -> {
+                    lastError = e.getMessage();
+                    setState(PositionCache.State.DOWN);
+                    scheduleReconnect();
+                },
+                this::scheduleReconnect // la sesión terminó limpia: reconectar igual
+        );
+    }
+
+    private Mono<String> login() {
+        return http.post()
+                .uri("/api/session")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .body(BodyInserters
+                        .fromFormData("email", cfg.getUser())
+                        .with("password", cfg.getPass()))
+                .exchangeToMono(resp -> {
+                    if (resp.statusCode().is2xxSuccessful()) {
+                        var c = resp.cookies().getFirst("JSESSIONID");
+                        if (c != null) return Mono.just("JSESSIONID=" + c.getValue());
+                    }
+                    return Mono.error(new IllegalStateException("Traccar login failed: " + resp.statusCode()));
+                });
+    }
+
+    private Mono<Void> connectWebSocket() {
+        setState(PositionCache.State.RECONNECTING);
+        String wsUrl = cfg.getBaseUrl().replaceFirst("^http", "ws") + cfg.getWsPath();
+        ReactorNettyWebSocketClient client = new ReactorNettyWebSocketClient();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Cookie", sessionCookie); // usa HttpHeaders, no WebSocketHttpHeaders
+
+        return client.execute(URI.create(wsUrl), headers, session -> {
+                    System.out.println("✅ [" + id() + "] WebSocket handshake successful with Traccar at " + wsUrl);
+                    connectedAt = Instant.now();
+                    backoffMs = props.getWsReconnectBackoffInitialMs();
+                    setState(PositionCache.State.OK);
+
+                    Mono<Void> pinger = Mono.defer(() ->
+                            session.send(Mono.just(session.textMessage("{\"action\":\"ping\"}")))
+                    ).repeatWhen(flux -> flux.delayElements(Duration.ofSeconds(props.getWsPingIntervalSeconds()))).then();
+
+                    Mono<Void> receiver = session.receive()
+                            .map(WebSocketMessage::getPayloadAsText)
+                            .doOnSubscribe(s -> System.out.println("📡 [" + id() + "] Listening for Traccar position updates..."))
+                            .doOnNext(this::handleMessage)
+                            .doOnError(e -> System.err.println("❌ [" + id() + "] Error receiving WS data: " + e.getMessage()))
+                            .then();
+
+                    // el primero que termine (socket cerrado o ping fallido) cierra la sesión
+                    return Mono.firstWithSignal(pinger, receiver);
+                })
+                .doOnSubscribe(s -> System.out.println("🔌 [" + id() + "] Connecting to Traccar WS..."))
+                .doOnSuccess(v -> System.out.println("⚡ [" + id() + "] WS session ended, scheduling reconnect..."))
+                .doOnError(e -> System.err.println("❌ [" + id() + "] WS connection error: " + e.getMessage()));
+    }
+
+    private void scheduleReconnect() {
+        if (state == PositionCache.State.OK) setState(PositionCache.State.RECONNECTING);
+        int delay = backoffMs;
+        backoffMs = Math.min(delay * 2, props.getWsReconnectBackoffMaxMs());
+        reconnects.incrementAndGet();
+        Mono.delay(Duration.ofMillis(delay)).subscribe(t -> loginAndConnect());
+    }
+
+    // corre en el hilo de recepción de reactor-netty: solo encola, el resto va por el pipeline
+    private void handleMessage(String json) {
+        messages.incrementAndGet();
+        lastMessageAt = Instant.now();
+        pipeline.submitFrame(cfg.getNamespace(), json);
+    }
+
+    private void setState(PositionCache.State s) {
+        if (state == s) return;
+        state = s;
+        onStateChange.accept(this);
+    }
+
+    // === RUTA / HISTORIAL DESDE TRACCAR ===
+    Mono<List<LiveFix>> fetchRoute(long remoteDeviceId, long deviceKey, Instant from, Instant to) {
+        System.out.println("[FETCH_ROUTE] Starting fetch for source=" + id() + " deviceId=" + remoteDeviceId + " from=" + from + " to=" + to);
+        System.out.println("[FETCH_ROUTE] Using cookie=" + sessionCookie);
+
+        String f = from.toString();
+        String t = to.toString();
+
+        return http.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path("/api/reports/route")
+                        .queryParam("deviceId", remoteDeviceId)
+                        .queryParam("from", f)
+                        .queryParam("to", t)
+                        .queryParam("format", "json")            // ⬅️ fuerza JSON
+                        .build())
+                .header("Accept", "application/json")        // ⬅️ fuerza JSON
+                .cookie("JSESSIONID", sessionCookie != null ? sessionCookie.replace("JSESSIONID=", "") : "")
+                .retrieve()
+                .onStatus(
+                        status -> {
+                            boolean bad = status.value() >= 400;
+                            if (bad)
+                                System.out.println("[FETCH_ROUTE] HTTP error status=" + status.value());
+                            return bad;
+                        },
+                        resp -> resp.bodyToMono(String.class)
+                                .map(body -> new RuntimeException("[FETCH_ROUTE] Remote error body=" + body))
+                )
+                .bodyToMono(com.fasterxml.jackson.databind.JsonNode.class)
+                .map(root -> {
+                    System.out.println("[FETCH_ROUTE] Response OK from Traccar");
+                    List<LiveFix> out = new ArrayList<>();
+                    com.fasterxml.jackson.databind.JsonNode arr = root.isArray() ? root : root.get("positions");
+                    if (arr != null && arr.isArray()) {
+                        System.out.println("[FETCH_ROUTE] Positions received: " + arr.size());
+                        for (var p : arr) {
+                            double lat = p.path("latitude").asDouble();
+                            double lon = p.path("longitude").asDouble();
+                            Instant fixTime = Instant.parse(p.path("fixTime").asText());
+                            Double speedKph = p.hasNonNull("speed") ? p.get("speed").asDouble() * 1.852 : null;
+                            Double headingDeg = p.hasNonNull("course") ? p.get("course").asDouble() : null;
+                            out.add(new LiveFix(lat, lon, speedKph, headingDeg, fixTime, deviceKey));
+                        }
+                    } else {
+                        System.out.println("[FETCH_ROUTE] No positions array in JSON");
+                    }
+                    return out;
+                })
+                .doOnError(err -> System.out.println("[FETCH_ROUTE] Exception: " + err.getMessage()));
+    }
+}
@@ -0,0 +1,372 @@
+package com.gps.enlace.trip;
+
+import com.gps.enlace.domain.Stop;
+import com.gps.enlace.domain.Trip;
+import com.gps.enlace.domain.TripState;
+import com.gps.enlace.live.Geo;
+import com.gps.enlace.live.LiveFix;
+import com.gps.enlace.live.LiveFixListener;
+import com.gps.enlace.repo.StopRepo;
+import com.gps.enlace.repo.TripRepo;
+import com.gps.enlace.repo.TripStateRepo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Máquina de estados por dispositivo que corre sobre cada fix ingerido:
+ * odómetro haversine, detección de paradas (velocidad + permanencia) y segmentación de viajes.
+ * Los viajes y paradas cerrados se guardan en las tablas trip / stop, una escritura por lote de ingesta.
+ * El odómetro y el tramo abierto se guardan en trip_state (periódicamente, al cerrar un tramo y al
+ * apagar) y se recargan al arrancar.
+ */
+@Component
+public class TripTracker implements LiveFixListener {
+
+    public enum Motion { MOVING, STOPPED }
+
+    /** Foto del estado en curso de un dispositivo (viaje o parada aún abiertos). */
+    public record Snapshot(long traccarDeviceId, Motion motion, Instant since,
+                           double odometerM, double openTripDistanceM, Instant lastFixTime) {}
+
+    private final TripRepo trips;
+    private final StopRepo stops;
+    private final TripStateRepo stateRepo;
+    private final ConcurrentHashMap<Long, DeviceState> states = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    @Value("${trips.stop-speed-kph:3}")
+    private double stopSpeedKph;
+
+    @Value("${trips.min-stop-seconds:300}")
+    private long minStopSeconds;
+
+    // un arranque cuenta solo si la velocidad se sostiene este tiempo o esta distancia (filtra picos)
+    @Value("${trips.min-move-seconds:30}")
+    private long minMoveSeconds;
+
+    @Value("${trips.min-move-meters:200}")
+    private double minMoveMeters;
+
+    @Value("${trips.min-trip-meters:100}")
+    private double minTripMeters;
+
+    // saltos de GPS más rápidos que esto no suman al odómetro
+    @Value("${trips.max-jump-kph:300}")
+    private double maxJumpKph;
+
+    public TripTracker(TripRepo trips, StopRepo stops, TripStateRepo stateRepo) {
+        this.trips = trips;
+        this.stops = stops;
+        this.stateRepo = stateRepo;
+    }
+
+    @PostConstruct
+    public void load() {
+        try {
+            List<TripState> rows = stateRepo.findAll();
+            rows.forEach(r -> states.put(r.getTraccarDeviceId(), DeviceState.from(r)));
+            System.out.println("[TRIPS] Restored state for " + rows.size() + " devices");
+        } catch (Exception e) {
+            System.err.println("[TRIPS] Restore failed, starting empty: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onFix(LiveFix fix) {
+        onFixes(List.of(fix));
+    }
+
+    @Override
+    public void onFixes(List<LiveFix> batch) {
+        Closed closed = new Closed();
+        for (LiveFix fix : batch) {
+            DeviceState st = states.computeIfAbsent(fix.traccarDeviceId, id -> new DeviceState());
+            synchronized (st) {
+                advance(st, fix, closed);
+            }
+            dirty.add(fix.traccarDeviceId);
+        }
+        try {
+            if (!closed.trips.isEmpty()) trips.saveAll(closed.trips);
+            if (!closed.stops.isEmpty()) stops.saveAll(closed.stops);
+        } catch (Exception e) {
+            System.err.println("[TRIPS] Persist failed: " + e.getMessage());
+        }
+        // quien cerró un tramo guarda su estado ya, para no repetirlo tras un reinicio
+        if (!closed.devices.isEmpty()) checkpoint(closed.devices);
+    }
+
+    public Optional<Snapshot> snapshot(long traccarDeviceId) {
+        DeviceState st = states.get(traccarDeviceId);
+        if (st == null) return Optional.empty();
+        synchronized (st) {
+            if (st.last == null) return Optional.empty();
+            Instant since = st.motion == Motion.MOVING ? st.tripStart.fixTime : st.stopStart.fixTime;
+            double open = st.motion == Motion.MOVING ? st.odometerM - st.tripStartOdometerM : 0;
+            return Optional.of(new Snapshot(traccarDeviceId, st.motion, since, st.odometerM, open, st.last.fixTime));
+        }
+    }
+
+    /** Estado en curso de todos los dispositivos conocidos. */
+    public List<Snapshot> snapshots() {
+        List<Snapshot> out = new ArrayList<>(states.size());
+        for (Long id : states.keySet()) snapshot(id).ifPresent(out::add);
+        return out;
+    }
+
+    @Scheduled(fixedDelayString = "${trips.checkpoint-ms:30000}")
+    public void checkpoint() {
+        checkpoint(new HashSet<>(dirty));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        checkpoint();
+    }
+
+    private void checkpoint(Set<Long> deviceIds) {
+        List<TripState> rows = new ArrayList<>(deviceIds.size());
+        for (Long id : deviceIds) {
+            dirty.remove(id);
+            DeviceState st = states.get(id);
+            if (st == null) continue;
+            synchronized (st) {
+                if (st.last != null) rows.add(st.toRow(id));
+            }
+        }
+        if (rows.isEmpty()) return;
+        try {
+            stateRepo.upsertAll(rows);
+        } catch (Exception e) {
+            dirty.addAll(deviceIds);
+            System.err.println("[TRIPS] State checkpoint failed: " + e.getMessage());
+        }
+    }
+
+    private void advance(DeviceState st, LiveFix fix, Closed closed) {
+        LiveFix prev = st.last;
+        if (prev != null && !fix.fixTime.isAfter(prev.fixTime)) return; // duplicado o fuera de orden
+
+        if (prev == null) {
+            st.last = fix;
+            double speed = speedKph(null, fix);
+            if (speed >= stopSpeedKph) startTrip(st, fix, st.odometerM, speed);
+            else startStop(st, fix);
+            return;
+        }
+
+        if (isJump(prev, fix)) {
+            LiveFix outlier = st.rejected;
+            st.rejected = fix;
+            if (outlier == null || isJump(outlier, fix)) return; // salto aislado: se ignora el fix
+            // dos fixes seguidos coherentes entre sí: la posición nueva es real; se re-ancla sin sumar el salto
+            prev = outlier;
+        }
+        st.rejected = null;
+
+        if (Duration.between(prev.fixTime, fix.fixTime).getSeconds() >= minStopSeconds) {
+            closeForGap(st, prev, closed);
+        }
+
+        double speed = speedKph(prev, fix);
+        st.odometerM += Geo.haversineMeters(prev, fix);
+        st.last = fix;
+
+        if (st.motion == Motion.MOVING) {
+            st.maxSpeedKph = Math.max(st.maxSpeedKph, speed);
+            if (speed >= stopSpeedKph) {
+                st.pending = null;
+                return;
+            }
+            if (st.pending == null) {
+                st.pending = fix;
+                st.pendingOdometerM = st.odometerM;
+            }
+            if (Duration.between(st.pending.fixTime, fix.fixTime).getSeconds() >= minStopSeconds) {
+                LiveFix stopAt = st.pending;
+                closeTrip(st, stopAt, st.pendingOdometerM, closed);
+                startStop(st, stopAt);
+            }
+            return;
+        }
+
+        if (speed < stopSpeedKph) {
+            st.pending = null; // pico aislado: la parada sigue
+            return;
+        }
+        if (st.pending == null) {
+            st.pending = fix;
+            st.pendingOdometerM = st.odometerM;
+            st.maxSpeedKph = speed;
+            return;
+        }
+        st.maxSpeedKph = Math.max(st.maxSpeedKph, speed);
+        boolean sustained = Duration.between(st.pending.fixTime, fix.fixTime).getSeconds() >= minMoveSeconds
+                || st.odometerM - st.pendingOdometerM >= minMoveMeters;
+        if (sustained) {
+            LiveFix moveAt = st.pending;
+            closeStop(st, moveAt, closed);
+            startTrip(st, moveAt, st.pendingOdometerM, st.maxSpeedKph);
+        }
+    }
+
+    // el equipo dejó de reportar (muchos callan con el contacto apagado): el silencio es una parada
+    private void closeForGap(DeviceState st, LiveFix prev, Closed closed) {
+        if (st.motion == Motion.MOVING) {
+            LiveFix stopAt = st.pending != null ? st.pending : prev;
+            double odometer = st.pending != null ? st.pendingOdometerM : st.odometerM;
+            closeTrip(st, stopAt, odometer, closed);
+            startStop(st, stopAt);
+        } else {
+            st.pending = null; // un arranque sin confirmar no sobrevive al silencio
+        }
+    }
+
+    private boolean isJump(LiveFix from, LiveFix to) {
+        double dtSec = Duration.between(from.fixTime, to.fixTime).toMillis() / 1000.0;
+        return dtSec > 0 && Geo.haversineMeters(from, to) / dtSec * 3.6 > maxJumpKph;
+    }
+
+    private void startTrip(DeviceState st, LiveFix at, double odometerM, double maxSpeedKph) {
+        st.motion = Motion.MOVING;
+        st.tripStart = at;
+        st.tripStartOdometerM = odometerM;
+        st.maxSpeedKph = maxSpeedKph;
+        st.pending = null;
+        st.stopStart = null;
+    }
+
+    private void startStop(DeviceState st, LiveFix at) {
+        st.motion = Motion.STOPPED;
+        st.stopStart = at;
+        st.tripStart = null;
+        st.pending = null;
+    }
+
+    private void closeTrip(DeviceState st, LiveFix end, double endOdometerM, Closed closed) {
+        double distance = endOdometerM - st.tripStartOdometerM;
+        if (distance < minTripMeters) return; // ruido de GPS estacionado
+        Trip t = new Trip();
+        t.setTraccarDeviceId(end.traccarDeviceId);
+        t.setStartTime(st.tripStart.fixTime.atOffset(ZoneOffset.UTC));
+        t.setEndTime(end.fixTime.atOffset(ZoneOffset.UTC));
+        t.setStartLat(st.tripStart.lat);
+        t.setStartLon(st.tripStart.lon);
+        t.setEndLat(end.lat);
+        t.setEndLon(end.lon);
+        t.setDistanceM(distance);
+        t.setMaxSpeedKph(st.maxSpeedKph);
+        closed.trips.add(t);
+        closed.devices.add(end.traccarDeviceId);
+    }
+
+    private void closeStop(DeviceState st, LiveFix end, Closed closed) {
+        LiveFix start = st.stopStart;
+        if (start == null) return;
+        if (Duration.between(start.fixTime, end.fixTime).getSeconds() < minStopSeconds) return;
+        Stop s = new Stop();
+        s.setTraccarDeviceId(start.traccarDeviceId);
+        s.setStartTime(start.fixTime.atOffset(ZoneOffset.UTC));
+        s.setEndTime(end.fixTime.atOffset(ZoneOffset.UTC));
+        s.setLat(start.lat);
+        s.setLon(start.lon);
+        closed.stops.add(s);
+        closed.devices.add(start.traccarDeviceId);
+    }
+
+    /** Usa la velocidad reportada; si no viene, la deriva del fix anterior. */
+    private static double speedKph(LiveFix prev, LiveFix fix) {
+        if (fix.speedKph != null) return fix.speedKph;
+        if (prev == null) return 0;
+        double dtSec = Duration.between(prev.fixTime, fix.fixTime).toMillis() / 1000.0;
+        return dtSec > 0 ? Geo.haversineMeters(prev, fix) / dtSec * 3.6 : 0;
+    }
+
+    private static final class Closed {
+        final List<Trip> trips = new ArrayList<>();
+        final List<Stop> stops = new ArrayList<>();
+        final Set<Long> devices = new HashSet<>();
+    }
+
+    private static final class DeviceState {
+        Motion motion;
+        LiveFix last;
+        double odometerM;
+
+        LiveFix tripStart;
+        double tripStartOdometerM;
+        double maxSpeedKph;
+
+        LiveFix stopStart;
+
+        // MOVING: primer fix lento de una posible parada; STOPPED: primer fix rápido de un posible arranque
+        LiveFix pending;
+        double pendingOdometerM;
+
+        // fix descartado por salto, a la espera de que el siguiente lo confirme
+        LiveFix rejected;
+
+        TripState toRow(long deviceId) {
+            LiveFix start = motion == Motion.MOVING ? tripStart : stopStart;
+            TripState r = new TripState();
+            r.setTraccarDeviceId(deviceId);
+            r.setMotion(motion.name());
+            r.setOdometerM(odometerM);
+            r.setLastTime(last.fixTime.atOffset(ZoneOffset.UTC));
+            r.setLastLat(last.lat);
+            r.setLastLon(last.lon);
+            r.setLastSpeedKph(last.speedKph);
+            r.setSegmentStartTime(start.fixTime.atOffset(ZoneOffset.UTC));
+            r.setSegmentStartLat(start.lat);
+            r.setSegmentStartLon(start.lon);
+            r.setSegmentStartOdometerM(motion == Motion.MOVING ? tripStartOdometerM : odometerM);
+            r.setMaxSpeedKph(maxSpeedKph);
+            if (pending != null) {
+                r.setPendingTime(pending.fixTime.atOffset(ZoneOffset.UTC));
+                r.setPendingLat(pending.lat);
+                r.setPendingLon(pending.lon);
+                r.setPendingOdometerM(pendingOdometerM);
+            }
+            r.setUpdatedAt(OffsetDateTime.now(ZoneOffset.UTC));
+            return r;
+        }
+
+        static DeviceState from(TripState r) {
+            long id = r.getTraccarDeviceId();
+            DeviceState st = new DeviceState();
+            st.motion = Motion.valueOf(r.getMotion());
+            st.odometerM = r.getOdometerM();
+            st.last = new LiveFix(r.getLastLat(), r.getLastLon(), r.getLastSpeedKph(), null,
+                    r.getLastTime().toInstant(), id);
+            LiveFix start = new LiveFix(r.getSegmentStartLat(), r.getSegmentStartLon(), null, null,
+                    r.getSegmentStartTime().toInstant(), id);
+            if (st.motion == Motion.MOVING) {
+                st.tripStart = start;
+                st.tripStartOdometerM = r.getSegmentStartOdometerM();
+            } else {
+                st.stopStart = start;
+            }
+            st.maxSpeedKph = r.getMaxSpeedKph();
+            if (r.getPendingTime() != null) {
+                st.pending = new LiveFix(r.getPendingLat(), r.getPendingLon(), null, null,
+                        r.getPendingTime().toInstant(), id);
+                st.pendingOdometerM = r.getPendingOdometerM();
+            }
+            return st;
+        }
+    }
+}
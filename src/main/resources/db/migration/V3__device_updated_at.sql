@@ -0,0 +1,20 @@
+-- Marca de agua para refrescar el directorio de dispositivos en memoria
+ALTER TABLE device
+    ADD COLUMN IF NOT EXISTS updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW();
+
+UPDATE device SET updated_at = created_at;
+
+-- Mantiene updated_at también para cambios hechos fuera de la app (SQL manual, admin)
+CREATE OR REPLACE FUNCTION device_touch_updated_at() RETURNS TRIGGER AS $$
+BEGIN
+    NEW.updated_at := NOW();
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_device_touch_updated_at ON device;
+CREATE TRIGGER trg_device_touch_updated_at
+    BEFORE UPDATE ON device
+    FOR EACH ROW EXECUTE FUNCTION device_touch_updated_at();
+
+CREATE INDEX IF NOT EXISTS idx_device_updated_at ON device(updated_at);
@@ -0,0 +1,29 @@
+-- Viajes y paradas calculados incrementalmente al ingerir posiciones
+
+CREATE TABLE trip (
+                      id                BIGSERIAL PRIMARY KEY,
+                      traccar_device_id BIGINT           NOT NULL,
+                      start_time        TIMESTAMPTZ      NOT NULL,
+                      end_time          TIMESTAMPTZ      NOT NULL,
+                      start_lat         DOUBLE PRECISION NOT NULL,
+                      start_lon         DOUBLE PRECISION NOT NULL,
+                      end_lat           DOUBLE PRECISION NOT NULL,
+                      end_lon           DOUBLE PRECISION NOT NULL,
+                      distance_m        DOUBLE PRECISION NOT NULL,
+                      max_speed_kph     DOUBLE PRECISION,
+                      CONSTRAINT trip_end_after_start CHECK (end_time >= start_time)
+);
+
+CREATE TABLE stop (
+                      id                BIGSERIAL PRIMARY KEY,
+                      traccar_device_id BIGINT           NOT NULL,
+                      start_time        TIMESTAMPTZ      NOT NULL,
+                      end_time          TIMESTAMPTZ      NOT NULL,
+                      lat               DOUBLE PRECISION NOT NULL,
+                      lon               DOUBLE PRECISION NOT NULL,
+                      CONSTRAINT stop_end_after_start CHECK (end_time >= start_time)
+);
+
+CREATE INDEX idx_trip_device_start ON trip(traccar_device_id, start_time);
+CREATE INDEX idx_trip_start ON trip(start_time);
+CREATE INDEX idx_stop_device_start ON stop(traccar_device_id, start_time);
@@ -0,0 +1,15 @@
+-- Historial submuestreado por niveles (p.ej. 60s y 600s).
+-- Cada bucket guarda sus puntos primero, último y extremos (N/S/E/O) para conservar la forma.
+CREATE TABLE position_rollup (
+                                 id                BIGSERIAL PRIMARY KEY,
+                                 traccar_device_id BIGINT           NOT NULL,
+                                 resolution_s      INTEGER          NOT NULL,
+                                 bucket_start      TIMESTAMPTZ      NOT NULL,
+                                 fix_time          TIMESTAMPTZ      NOT NULL,
+                                 lat               DOUBLE PRECISION NOT NULL,
+                                 lon               DOUBLE PRECISION NOT NULL,
+                                 speed_kph         DOUBLE PRECISION,
+                                 heading_deg       DOUBLE PRECISION
+);
+
+CREATE INDEX idx_position_rollup_lookup ON position_rollup(traccar_device_id, resolution_s, fix_time);
@@ -0,0 +1,8 @@
+-- Ids por secuencia con asignación en bloques de 50 (pooled) para que Hibernate
+-- pueda agrupar INSERTs en lotes JDBC. Las columnas siguen con DEFAULT nextval,
+-- así los INSERT manuales siguen funcionando sin chocar con los bloques.
+ALTER SEQUENCE device_id_seq INCREMENT BY 50;
+ALTER SEQUENCE mirror_link_id_seq INCREMENT BY 50;
+ALTER SEQUENCE trip_id_seq INCREMENT BY 50;
+ALTER SEQUENCE stop_id_seq INCREMENT BY 50;
+ALTER SEQUENCE position_rollup_id_seq INCREMENT BY 50;
@@ -0,0 +1,21 @@
+-- Estado en curso de TripTracker por dispositivo (odómetro y tramo abierto),
+-- para que un reinicio no lo pierda.
+CREATE TABLE trip_state (
+                            traccar_device_id        BIGINT PRIMARY KEY,
+                            motion                   VARCHAR(16)      NOT NULL,
+                            odometer_m               DOUBLE PRECISION NOT NULL,
+                            last_time                TIMESTAMPTZ      NOT NULL,
+                            last_lat                 DOUBLE PRECISION NOT NULL,
+                            last_lon                 DOUBLE PRECISION NOT NULL,
+                            last_speed_kph           DOUBLE PRECISION,
+                            segment_start_time       TIMESTAMPTZ      NOT NULL,
+                            segment_start_lat        DOUBLE PRECISION NOT NULL,
+                            segment_start_lon        DOUBLE PRECISION NOT NULL,
+                            segment_start_odometer_m DOUBLE PRECISION NOT NULL,
+                            max_speed_kph            DOUBLE PRECISION NOT NULL,
+                            pending_time             TIMESTAMPTZ,
+                            pending_lat              DOUBLE PRECISION,
+                            pending_lon              DOUBLE PRECISION,
+                            pending_odometer_m       DOUBLE PRECISION,
+                            updated_at               TIMESTAMPTZ      NOT NULL DEFAULT now()
+);
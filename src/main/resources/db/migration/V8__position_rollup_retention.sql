@@ -0,0 +1,2 @@
+-- Poda por nivel (HistoryTiers.prune): DELETE ... WHERE resolution_s = ? AND bucket_start < ?
+CREATE INDEX idx_position_rollup_retention ON position_rollup(resolution_s, bucket_start);
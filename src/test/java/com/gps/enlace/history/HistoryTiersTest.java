@@ -0,0 +1,108 @@
+package com.gps.enlace.history;
+
+import com.gps.enlace.domain.PositionRollup;
+import com.gps.enlace.live.LiveFix;
+import com.gps.enlace.repo.PositionRollupRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HistoryTiersTest {
+
+    private static final long DEVICE = 4;
+    // inicio de un bucket de 600 s (y por tanto también de 60 s)
+    private static final Instant T0 = Instant.parse("2025-03-03T08:00:00Z");
+
+    private final List<PositionRollup> saved = new ArrayList<>();
+    private PositionRollupRepo repo;
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(PositionRollupRepo.class);
+        when(repo.saveAll(anyList())).thenAnswer(inv -> { saved.addAll(inv.getArgument(0)); return inv.getArgument(0); });
+    }
+
+    private HistoryTiers tiers() {
+        return new HistoryTiers(repo, new int[]{600, 60}, new long[]{168, 2160});
+    }
+
+    private static LiveFix fix(long second, double lat, double lon) {
+        return new LiveFix(lat, lon, 10.0, null, T0.plusSeconds(second), DEVICE);
+    }
+
+    private List<PositionRollup> rows(int resolution) {
+        return saved.stream().filter(r -> r.getResolutionSeconds() == resolution).toList();
+    }
+
+    @Test
+    void tiersAreSortedFinestFirst() {
+        assertArrayEquals(new int[]{60, 600}, tiers().tiers());
+    }
+
+    @Test
+    void bucketClosesWhenNextBucketStartsAndKeepsShapePoints() {
+        HistoryTiers h = tiers();
+        h.onFixes(List.of(
+                fix(0, 19.000, -99.000),   // primero
+                fix(10, 19.010, -99.000),  // norte
+                fix(20, 18.990, -99.000),  // sur
+                fix(30, 19.000, -98.990),  // este
+                fix(40, 19.000, -99.010),  // oeste
+                fix(45, 19.001, -99.001),  // intermedio: no se guarda
+                fix(50, 19.002, -99.002)   // último
+        ));
+        assertTrue(saved.isEmpty());
+
+        h.onFix(fix(60, 19.003, -99.003)); // abre el siguiente bucket de 60 s
+        List<PositionRollup> minute = rows(60);
+        assertEquals(6, minute.size());
+        assertTrue(minute.stream().allMatch(r -> r.getBucketStart().toInstant().equals(T0)));
+        assertTrue(minute.stream().noneMatch(r -> r.getFixTime().toInstant().equals(T0.plusSeconds(45))));
+        assertTrue(rows(600).isEmpty(), "600 s bucket is still open");
+        assertEquals(1, h.openPoints(DEVICE, 60).size());
+    }
+
+    @Test
+    void lateFixAfterFlushDoesNotRewriteTheBucket() {
+        HistoryTiers h = tiers();
+        h.onFixes(List.of(fix(0, 19.0, -99.0), fix(30, 19.001, -99.0)));
+        h.shutdown(); // escribe los buckets abiertos, aunque estén parciales
+        int written = saved.size();
+        assertTrue(written > 0);
+
+        h.onFix(fix(40, 19.002, -99.0)); // backlog del mismo bucket
+        h.shutdown();
+        assertEquals(written, saved.size());
+
+        h.onFix(fix(700, 19.1, -99.0));  // bucket nuevo: sí cuenta
+        h.shutdown();
+        assertEquals(2, rows(60).stream().map(PositionRollup::getBucketStart).distinct().count());
+    }
+
+    @Test
+    void lastWrittenBucketsSurviveRestart() {
+        PositionRollupRepo.LastBucket last = new PositionRollupRepo.LastBucket() {
+            public Long getTraccarDeviceId() { return DEVICE; }
+            public Integer getResolutionSeconds() { return 60; }
+            public OffsetDateTime getLastBucketStart() { return T0.atOffset(ZoneOffset.UTC); }
+        };
+        when(repo.findLastBuckets()).thenReturn(List.of(last));
+        HistoryTiers h = tiers();
+        h.load();
+
+        h.onFix(fix(30, 19.0, -99.0)); // mismo bucket de 60 s que ya estaba escrito
+        h.shutdown();
+        assertTrue(rows(60).isEmpty());
+        assertEquals(1, rows(600).size(), "the 600 s tier had no mark and still records it");
+    }
+}
@@ -0,0 +1,119 @@
+package com.gps.enlace.history;
+
+import com.gps.enlace.live.LiveFix;
+import com.gps.enlace.traccar.TraccarClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedConstruction;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class ReplayServiceTest {
+
+    private static final long DEVICE = 4;
+    // alineado a minuto: con chunk-minutes=1 cada 6º fix cae justo en el borde de dos tramos
+    private static final Instant T0 = Instant.parse("2025-03-03T08:00:00Z");
+    private static final int FIXES = 30;
+
+    private final List<LiveFix> route = new ArrayList<>();
+    private final List<String> names = Collections.synchronizedList(new ArrayList<>());
+    private final List<Object> fixTimes = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> sentAtMs = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch completed = new CountDownLatch(1);
+
+    private TraccarClient traccar;
+    private ReplayService replay;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < FIXES; i++) route.add(new LiveFix(19, -99, 30.0, null, T0.plusSeconds(10L * i), DEVICE));
+
+        // fetch síncrono (como un tramo ya en caché): [from, to] con ambos bordes incluidos
+        traccar = mock(TraccarClient.class);
+        when(traccar.fetchRoute(anyLong(), any(), any())).thenAnswer(inv -> {
+            Instant from = inv.getArgument(1), to = inv.getArgument(2);
+            return Mono.just(route.stream().filter(f -> !f.fixTime.isBefore(from) && !f.fixTime.isAfter(to)).toList());
+        });
+
+        replay = new ReplayService(traccar, 2);
+        ReflectionTestUtils.setField(replay, "chunkMinutes", 1);
+        ReflectionTestUtils.setField(replay, "maxGapMs", 5000L);
+        ReflectionTestUtils.setField(replay, "prefetchBelow", 20);
+        ReflectionTestUtils.setField(replay, "maxHours", 48);
+    }
+
+    @AfterEach
+    void tearDown() {
+        replay.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private MockedConstruction<SseEmitter> recordingEmitters() {
+        return mockConstruction(SseEmitter.class, (emitter, ctx) -> {
+            doAnswer(inv -> {
+                String name = null;
+                Object data = null;
+                for (var item : ((SseEmitter.SseEventBuilder) inv.getArgument(0)).build()) {
+                    if (item.getData() instanceof String s && s.contains("event:")) {
+                        name = s.substring(s.indexOf("event:") + 6, s.indexOf('\n', s.indexOf("event:")));
+                    } else if (!(item.getData() instanceof String)) {
+                        data = item.getData();
+                    }
+                }
+                names.add(name);
+                if ("position".equals(name)) {
+                    fixTimes.add(((Map<String, Object>) data).get("fixTime"));
+                    sentAtMs.add(System.currentTimeMillis());
+                }
+                return null;
+            }).when(emitter).send(any(SseEmitter.SseEventBuilder.class));
+            doAnswer(inv -> { completed.countDown(); return null; }).when(emitter).complete();
+        });
+    }
+
+    @Test
+    void emitsEveryFixOnceAtTheRequestedPace() throws Exception {
+        // 10 s entre fixes a x200 = 50 ms entre eventos
+        try (var ignored = recordingEmitters()) {
+            replay.start(DEVICE, T0, T0.plusSeconds(10L * (FIXES - 1)), null, 200, false);
+        }
+        assertTrue(completed.await(10, TimeUnit.SECONDS), "replay did not finish");
+
+        assertEquals(route.stream().map(f -> f.fixTime.toString()).toList(), fixTimes);
+        assertEquals("replay", names.get(0));
+        assertEquals("end", names.get(names.size() - 1));
+
+        long elapsed = sentAtMs.get(FIXES - 1) - sentAtMs.get(0);
+        assertTrue(elapsed >= (FIXES - 1) * 50L * 9 / 10, "replay ran too fast: " + elapsed + " ms");
+        for (int i = 1; i < FIXES; i++) {
+            // una segunda cadena de pasos emitiría pares casi simultáneos
+            assertTrue(sentAtMs.get(i) - sentAtMs.get(i - 1) >= 30, "fix " + i + " came too early");
+        }
+    }
+
+    @Test
+    void pausedReplaySendsOneFixAndStops() throws Exception {
+        try (var ignored = recordingEmitters()) {
+            replay.start(DEVICE, T0, T0.plusSeconds(10L * (FIXES - 1)), T0.plusSeconds(50), 1, true);
+        }
+        Thread.sleep(300);
+        assertEquals(List.of(T0.plusSeconds(50).toString()), fixTimes);
+        assertEquals(List.of("replay", "position", "paused"), names);
+        assertEquals(1, completed.getCount(), "a paused replay stays open");
+    }
+}
@@ -0,0 +1,110 @@
+package com.gps.enlace.history;
+
+import com.gps.enlace.live.LiveFix;
+import com.gps.enlace.repo.PositionRollupRepo;
+import com.gps.enlace.traccar.TraccarClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class TrailServiceTest {
+
+    private static final long DEVICE = 4;
+    private static final Instant TO = Instant.parse("2025-03-31T12:00:00Z");
+
+    private TraccarClient traccar;
+    private HistoryTiers tiers;
+    private PositionRollupRepo repo;
+    private TrailService trails;
+
+    @BeforeEach
+    void setUp() {
+        traccar = mock(TraccarClient.class);
+        tiers = mock(HistoryTiers.class);
+        repo = mock(PositionRollupRepo.class);
+        when(tiers.tiers()).thenReturn(new int[]{60, 600});
+        when(tiers.openPoints(anyLong(), anyInt())).thenReturn(List.of());
+        when(repo.findEarliest(anyLong(), anyInt())).thenReturn(Optional.empty());
+        when(repo.findRange(anyLong(), anyInt(), any(), any())).thenReturn(List.of());
+        when(traccar.fetchRoute(anyLong(), any(), any())).thenReturn(Mono.just(List.of()));
+
+        trails = new TrailService(traccar, tiers, repo);
+        ReflectionTestUtils.setField(trails, "rawIntervalSeconds", 5);
+        ReflectionTestUtils.setField(trails, "pointsPerBucket", 3);
+        ReflectionTestUtils.setField(trails, "maxPointsCap", 2000);
+        ReflectionTestUtils.setField(trails, "maxHours", 2160);
+        ReflectionTestUtils.setField(trails, "maxRawHours", 168);
+    }
+
+    private void tierFrom(int res, Instant earliest) {
+        when(repo.findEarliest(DEVICE, res)).thenReturn(Optional.of(earliest.atOffset(ZoneOffset.UTC)));
+    }
+
+    private static Instant hoursBefore(long h) { return TO.minusSeconds(h * 3600); }
+
+    @Test
+    void shortRangeGoesRaw() {
+        var t = trails.trail(DEVICE, hoursBefore(1), TO, null);
+        assertEquals("raw", t.resolution());
+        verify(traccar).fetchRoute(DEVICE, hoursBefore(1), TO);
+    }
+
+    @Test
+    void picksFinestTierThatFitsTheBudget() {
+        tierFrom(60, hoursBefore(1000));
+        tierFrom(600, hoursBefore(1000));
+        // 24 h a 60 s ≈ 4320 puntos > 2000; a 600 s ≈ 432
+        assertEquals("600s", trails.trail(DEVICE, hoursBefore(24), TO, null).resolution());
+        // con un presupuesto mayor basta el de 60 s... pero el tope es 2000
+        assertEquals("600s", trails.trail(DEVICE, hoursBefore(24), TO, 100_000_000).resolution());
+        // 6 h a 60 s ≈ 1080 puntos
+        assertEquals("60s", trails.trail(DEVICE, hoursBefore(6), TO, null).resolution());
+        verify(traccar, never()).fetchRoute(anyLong(), any(), any());
+    }
+
+    @Test
+    void thirtyDayTrailIsServedFromTiersWithoutTheRawCap() {
+        tierFrom(600, hoursBefore(2000));
+        var t = trails.trail(DEVICE, hoursBefore(30 * 24), TO, null);
+        assertEquals("600s", t.resolution());
+        verify(repo).findRange(eq(DEVICE), eq(600), eq(hoursBefore(30 * 24).atOffset(ZoneOffset.UTC)), any());
+        verify(traccar, never()).fetchRoute(anyLong(), any(), any());
+    }
+
+    @Test
+    void missingHeadIsFetchedRawAndCapped() {
+        Instant earliest = hoursBefore(24);
+        tierFrom(600, earliest);
+        var t = trails.trail(DEVICE, hoursBefore(30 * 24), TO, null);
+        assertEquals("raw+600s", t.resolution());
+        // el tramo crudo se limita a max-raw-hours antes del inicio del nivel
+        verify(traccar).fetchRoute(DEVICE, earliest.minusSeconds(168 * 3600), earliest);
+        verify(repo).findRange(eq(DEVICE), eq(600), eq(earliest.atOffset(ZoneOffset.UTC)), any());
+    }
+
+    @Test
+    void rawFallbackIsCappedAndThinnedToMaxPoints() {
+        List<LiveFix> many = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) many.add(new LiveFix(19, -99, 0.0, null, hoursBefore(1).plusSeconds(i / 3), DEVICE));
+        when(traccar.fetchRoute(anyLong(), any(), any())).thenReturn(Mono.just(many));
+
+        var t = trails.trail(DEVICE, hoursBefore(720), TO, 100_000_000);
+        assertEquals("raw", t.resolution());
+        assertEquals(2000, t.points().size());
+        verify(traccar).fetchRoute(DEVICE, hoursBefore(168), TO);
+    }
+}
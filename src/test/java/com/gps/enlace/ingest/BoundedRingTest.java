@@ -0,0 +1,91 @@
+package com.gps.enlace.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedRingTest {
+
+    @Test
+    void capacityRoundsUpToPowerOfTwo() {
+        assertEquals(4, new BoundedRing<Integer>(3).capacity());
+        assertEquals(4, new BoundedRing<Integer>(4).capacity());
+        assertEquals(8, new BoundedRing<Integer>(5).capacity());
+    }
+
+    @Test
+    void fifoAndFullAcrossWraparound() {
+        BoundedRing<Integer> ring = new BoundedRing<>(4);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) assertTrue(ring.offer(round * 10 + i));
+            assertFalse(ring.offer(-1));
+            assertEquals(4, ring.size());
+            for (int i = 0; i < 4; i++) assertEquals(round * 10 + i, ring.poll());
+            assertNull(ring.poll());
+            assertTrue(ring.isEmpty());
+        }
+    }
+
+    @Test
+    void drainToRespectsMax() {
+        BoundedRing<Integer> ring = new BoundedRing<>(8);
+        for (int i = 0; i < 6; i++) ring.offer(i);
+        List<Integer> out = new ArrayList<>();
+        assertEquals(4, ring.drainTo(out, 4));
+        assertEquals(List.of(0, 1, 2, 3), out);
+        assertEquals(2, ring.size());
+    }
+
+    @Test
+    void concurrentProducersAndConsumersSeeEveryItemOnce() throws Exception {
+        int producers = 4, consumers = 4, perProducer = 100_000;
+        int total = producers * perProducer;
+        BoundedRing<Integer> ring = new BoundedRing<>(1024);
+        AtomicIntegerArray seen = new AtomicIntegerArray(total);
+        AtomicInteger consumed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(producers + consumers);
+
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            pool.execute(() -> {
+                await(start);
+                for (int i = 0; i < perProducer; i++) {
+                    while (!ring.offer(base + i)) Thread.onSpinWait();
+                }
+            });
+        }
+        for (int c = 0; c < consumers; c++) {
+            pool.execute(() -> {
+                await(start);
+                while (consumed.get() < total) {
+                    Integer v = ring.poll();
+                    if (v == null) { Thread.onSpinWait(); continue; }
+                    seen.incrementAndGet(v);
+                    consumed.incrementAndGet();
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(total, consumed.get());
+        for (int i = 0; i < total; i++) assertEquals(1, seen.get(i), "item " + i);
+        assertTrue(ring.isEmpty());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try { latch.await(); }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+}
@@ -0,0 +1,110 @@
+package com.gps.enlace.ingest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestStageTest {
+
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<Integer> handled = new CopyOnWriteArrayList<>();
+    private IngestStage<Integer> stage;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (stage != null) stage.stop();
+    }
+
+    /** Etapa de capacidad 4 cuyo handler se queda retenido en el primer lote hasta {@link #release}. */
+    private IngestStage<Integer> stalledStage(OverflowPolicy policy) throws InterruptedException {
+        stage = new IngestStage<>("test", 4, policy, 1, batch -> {
+            entered.countDown();
+            try { release.await(); }
+            catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+            handled.addAll(batch);
+        });
+        stage.start();
+        assertTrue(stage.submit(0));
+        assertTrue(entered.await(2, TimeUnit.SECONDS));
+        for (int i = 1; i <= 4; i++) assertTrue(stage.submit(i)); // llena la cola
+        return stage;
+    }
+
+    private void releaseAndAwait(int expected) throws InterruptedException {
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 2000;
+        while (handled.size() < expected && System.currentTimeMillis() < deadline) Thread.sleep(5);
+    }
+
+    @Test
+    void dropNewestRejectsIncoming() throws Exception {
+        stalledStage(OverflowPolicy.DROP_NEWEST);
+        assertFalse(stage.submit(5));
+        assertEquals(1, stage.stats().dropped());
+
+        releaseAndAwait(5);
+        assertEquals(List.of(0, 1, 2, 3, 4), handled);
+    }
+
+    @Test
+    void dropOldestMakesRoomForIncoming() throws Exception {
+        stalledStage(OverflowPolicy.DROP_OLDEST);
+        assertFalse(stage.submit(5));
+        assertEquals(1, stage.stats().dropped());
+
+        releaseAndAwait(5);
+        assertEquals(List.of(0, 2, 3, 4, 5), handled);
+    }
+
+    @Test
+    void blockWaitsForRoomWithoutDropping() throws Exception {
+        stalledStage(OverflowPolicy.BLOCK);
+        CompletableFuture<Boolean> blocked = CompletableFuture.supplyAsync(() -> stage.submit(5));
+        Thread.sleep(100);
+        assertFalse(blocked.isDone());
+
+        release.countDown();
+        assertTrue(blocked.get(2, TimeUnit.SECONDS));
+        releaseAndAwait(6);
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), handled);
+        assertEquals(0, stage.stats().dropped());
+    }
+
+    @Test
+    void stopDrainsWhatIsQueued() throws Exception {
+        stage = new IngestStage<>("drain", 1024, OverflowPolicy.BLOCK, 16, batch -> {
+            try { Thread.sleep(1); }
+            catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+            handled.addAll(batch);
+        });
+        stage.start();
+        for (int i = 0; i < 500; i++) assertTrue(stage.submit(i));
+        stage.stop();
+
+        assertEquals(500, handled.size());
+        assertEquals(500, stage.stats().processed());
+        assertEquals(0, stage.stats().depth());
+    }
+
+    @Test
+    void handlerFailureDoesNotKillTheStage() throws Exception {
+        stage = new IngestStage<>("failing", 16, OverflowPolicy.BLOCK, 1, batch -> {
+            if (batch.get(0) == 0) throw new IllegalStateException("boom");
+            handled.addAll(batch);
+        });
+        stage.start();
+        stage.submit(0);
+        stage.submit(1);
+        releaseAndAwait(1);
+        assertEquals(List.of(1), handled);
+    }
+}
@@ -0,0 +1,93 @@
+package com.gps.enlace.live;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedWheelTimerTest {
+
+    private static final long TICK_MS = 10;
+
+    // 8 slots de 10 ms: cualquier vencimiento más allá de 80 ms da más de una vuelta
+    private final HashedWheelTimer timer = new HashedWheelTimer("test-wheel", TICK_MS, 8);
+
+    @AfterEach
+    void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    void multiRoundDeadlineFiresAfterItsDeadline() throws Exception {
+        long deadline = System.currentTimeMillis() + 350;
+        AtomicLong firedAt = new AtomicLong();
+        CountDownLatch fired = new CountDownLatch(1);
+        timer.schedule(deadline, () -> {
+            firedAt.set(System.currentTimeMillis());
+            fired.countDown();
+        });
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(firedAt.get() >= deadline, "fired " + (deadline - firedAt.get()) + " ms early");
+        assertTrue(firedAt.get() - deadline < 200, "fired " + (firedAt.get() - deadline) + " ms late");
+    }
+
+    @Test
+    void deadlinesInDifferentRoundsOfTheSameSlotFireInOrder() throws Exception {
+        long now = System.currentTimeMillis();
+        AtomicInteger order = new AtomicInteger();
+        int[] seen = new int[2];
+        CountDownLatch fired = new CountDownLatch(2);
+        // misma posición en la rueda (80 ms = una vuelta), distinta ronda
+        timer.schedule(now + 180, () -> { seen[1] = order.incrementAndGet(); fired.countDown(); });
+        timer.schedule(now + 100, () -> { seen[0] = order.incrementAndGet(); fired.countDown(); });
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertEquals(1, seen[0]);
+        assertEquals(2, seen[1]);
+    }
+
+    @Test
+    void cancelledTimeoutNeverFires() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        HashedWheelTimer.Timeout t = timer.schedule(System.currentTimeMillis() + 100, runs::incrementAndGet);
+        assertTrue(t.cancel());
+        assertTrue(t.isCancelled());
+
+        CountDownLatch later = new CountDownLatch(1);
+        timer.schedule(System.currentTimeMillis() + 250, later::countDown);
+        assertTrue(later.await(2, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    void cancelAfterFiringReturnsFalse() throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        HashedWheelTimer.Timeout t = timer.schedule(System.currentTimeMillis() + 20, fired::countDown);
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertFalse(t.cancel());
+    }
+
+    @Test
+    void pastDueDeadlineFiresOnNextTick() throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        long scheduledAt = System.currentTimeMillis();
+        timer.schedule(scheduledAt - 60_000, fired::countDown);
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() - scheduledAt < 500);
+    }
+
+    @Test
+    void failingTaskDoesNotStopTheWheel() throws Exception {
+        long now = System.currentTimeMillis();
+        timer.schedule(now + 20, () -> { throw new IllegalStateException("boom"); });
+        CountDownLatch fired = new CountDownLatch(1);
+        timer.schedule(now + 60, fired::countDown);
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,89 @@
+package com.gps.enlace.live;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveEventBusTest {
+
+    private static final long DEVICE = 4;
+
+    private final LiveEventBus bus = new LiveEventBus(4);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        bus.shutdown();
+    }
+
+    private void stuck(LiveEventBus.LiveEvent ev) {
+        try { release.await(); }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    @Test
+    void stuckSubscriberDoesNotBlockPublishOrOtherSubscribers() throws Exception {
+        bus.subscribe(DEVICE, this::stuck);
+        CountDownLatch healthy = new CountDownLatch(1);
+        bus.subscribe(DEVICE, ev -> { if (Integer.valueOf(99).equals(ev.data())) healthy.countDown(); });
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < 100; i++) bus.publish(DEVICE, "stale", i);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0) < 500);
+        assertTrue(healthy.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void fullQueueDropsOldestEvents() throws Exception {
+        List<Object> seen = new CopyOnWriteArrayList<>();
+        CountDownLatch first = new CountDownLatch(1);
+        bus.subscribe(DEVICE, ev -> {
+            seen.add(ev.data());
+            first.countDown();
+            stuck(ev);
+        });
+        bus.publish(DEVICE, "device", 0);
+        assertTrue(first.await(2, TimeUnit.SECONDS)); // el drenador quedó retenido en el evento 0
+        for (int i = 1; i <= 10; i++) bus.publish(DEVICE, "device", i);
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 2000;
+        while (seen.size() < 5 && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        assertEquals(List.of(0, 7, 8, 9, 10), seen); // cola de 4: solo sobreviven los más recientes
+    }
+
+    @Test
+    void failingSubscriberIsUnsubscribed() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        bus.subscribe(DEVICE, ev -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("client gone");
+        });
+        CountDownLatch other = new CountDownLatch(2);
+        bus.subscribe(DEVICE, ev -> other.countDown());
+
+        bus.publish(DEVICE, "stale", 1);
+        Thread.sleep(100);
+        bus.publish(DEVICE, "stale", 2);
+        assertTrue(other.await(2, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void unsubscribeStopsDelivery() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Runnable unsubscribe = bus.subscribe(DEVICE, ev -> calls.incrementAndGet());
+        unsubscribe.run();
+        bus.publish(DEVICE, "stale", 1);
+        Thread.sleep(100);
+        assertEquals(0, calls.get());
+    }
+}
@@ -0,0 +1,106 @@
+package com.gps.enlace.traccar;
+
+import com.gps.enlace.config.TraccarProps;
+import com.gps.enlace.live.LiveFix;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteCoalescerTest {
+
+    private static final long DEVICE = 4;
+    private static final Instant FROM = Instant.parse("2025-03-03T08:00:00Z");
+    private static final Instant TO = FROM.plusSeconds(3600);
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private RouteCoalescer coalescer(int ttlSeconds, long callTimeoutMs, int maxConcurrent) {
+        TraccarProps props = new TraccarProps();
+        props.setRouteCoalesceWindowSeconds(30);
+        props.setRouteResultTtlSeconds(ttlSeconds);
+        props.setRouteMaxConcurrent(maxConcurrent);
+        props.setRouteQueueTimeoutMs(1000);
+        props.setRouteTimeoutMs(callTimeoutMs);
+        return new RouteCoalescer(props, new SimpleMeterRegistry());
+    }
+
+    /** Loader que cuenta llamadas y tarda un poco, para que los llamadores concurrentes coincidan. */
+    private BiFunction<Instant, Instant, Mono<List<LiveFix>>> slowLoader() {
+        return (f, t) -> Mono.fromCallable(() -> {
+            calls.incrementAndGet();
+            return List.of(new LiveFix(19.0, -99.0, 0.0, null, FROM.plusSeconds(60), DEVICE),
+                           new LiveFix(19.1, -99.0, 0.0, null, FROM.plusSeconds(1800), DEVICE));
+        }).delayElement(Duration.ofMillis(200));
+    }
+
+    @Test
+    void concurrentCallersShareOneUpstreamCall() {
+        RouteCoalescer c = coalescer(15, 5000, 4);
+        var loader = slowLoader();
+        List<List<LiveFix>> results = Flux.range(0, 50)
+                .flatMap(i -> c.fetch(DEVICE, FROM.plusSeconds(i % 10), TO.minusSeconds(i % 10), loader))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(1, calls.get());
+        assertEquals(50, results.size());
+        results.forEach(r -> assertEquals(2, r.size()));
+    }
+
+    @Test
+    void callerOnlySeesPointsInsideItsOwnRange() {
+        RouteCoalescer c = coalescer(15, 5000, 4);
+        List<LiveFix> narrow = c.fetch(DEVICE, FROM.plusSeconds(10), FROM.plusSeconds(120), slowLoader())
+                .block(Duration.ofSeconds(5));
+        assertEquals(1, narrow.size());
+    }
+
+    @Test
+    void resultExpiresAfterTtl() throws Exception {
+        RouteCoalescer c = coalescer(1, 5000, 4);
+        var loader = slowLoader();
+        c.fetch(DEVICE, FROM, TO, loader).block(Duration.ofSeconds(5));
+        c.fetch(DEVICE, FROM, TO, loader).block(Duration.ofSeconds(5));
+        assertEquals(1, calls.get(), "second call within TTL must be served from cache");
+
+        Thread.sleep(1500);
+        c.fetch(DEVICE, FROM, TO, loader).block(Duration.ofSeconds(5));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void errorsAreEvictedSoTheNextCallerRetries() {
+        RouteCoalescer c = coalescer(15, 5000, 4);
+        BiFunction<Instant, Instant, Mono<List<LiveFix>>> failing = (f, t) -> Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.error(new IllegalStateException("upstream down"));
+        });
+        assertThrows(IllegalStateException.class, () -> c.fetch(DEVICE, FROM, TO, failing).block(Duration.ofSeconds(5)));
+
+        List<LiveFix> ok = c.fetch(DEVICE, FROM, TO, slowLoader()).block(Duration.ofSeconds(5));
+        assertEquals(2, calls.get());
+        assertEquals(2, ok.size());
+    }
+
+    @Test
+    void hungCallTimesOutAndReleasesItsPermit() {
+        RouteCoalescer c = coalescer(15, 200, 1);
+        BiFunction<Instant, Instant, Mono<List<LiveFix>>> hung = (f, t) -> Mono.never();
+        assertThrows(RuntimeException.class, () -> c.fetch(DEVICE, FROM, TO, hung).block(Duration.ofSeconds(5)));
+
+        // con un solo permiso, esta llamada solo pasa si el timeout lo devolvió
+        List<LiveFix> ok = c.fetch(DEVICE, FROM.plusSeconds(7200), TO.plusSeconds(7200), slowLoader())
+                .block(Duration.ofSeconds(5));
+        assertNotNull(ok);
+        assertEquals(1, calls.get());
+    }
+}
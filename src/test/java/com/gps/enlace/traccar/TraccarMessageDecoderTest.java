@@ -0,0 +1,44 @@
+package com.gps.enlace.traccar;
+
+import com.gps.enlace.live.DeviceStatusCache;
+import com.gps.enlace.live.LiveFix;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraccarMessageDecoderTest {
+
+    private final TraccarMessageDecoder decoder = new TraccarMessageDecoder();
+
+    @Test
+    void badElementIsSkippedWithoutDroppingTheFrame() {
+        // -1 y 2^40 quedan fuera del rango de DeviceKey
+        String json = """
+                {"positions":[
+                   {"deviceId":-1,"latitude":19.1,"longitude":-99.1,"fixTime":"2025-03-03T08:00:00Z"},
+                   {"deviceId":7,"latitude":19.2,"longitude":-99.2,"speed":10,"fixTime":"2025-03-03T08:00:05Z",
+                    "attributes":{"ignition":true}}],
+                 "devices":[{"id":1099511627776,"status":"online"},{"id":7,"status":"online"}],
+                 "events":[{"id":1,"deviceId":-5,"type":"alarm"},{"id":2,"deviceId":7,"type":"geofenceEnter","geofenceId":3}]}
+                """;
+        var d = decoder.decode(2, json);
+
+        assertEquals(1, d.fixes().size());
+        LiveFix f = d.fixes().get(0);
+        assertEquals(DeviceKey.of(2, 7), f.traccarDeviceId);
+        assertEquals(10 * 1.852, f.speedKph, 1e-9);
+
+        assertEquals(3, d.status().size());
+        assertTrue(d.status().stream().allMatch(u -> switch (u) {
+            case DeviceStatusCache.StatusChange s -> s.traccarDeviceId() == DeviceKey.of(2, 7);
+            case DeviceStatusCache.Event e -> e.traccarDeviceId() == DeviceKey.of(2, 7) && e.geofenceId() == 3L;
+        }));
+    }
+
+    @Test
+    void malformedJsonDecodesToNothing() {
+        var d = decoder.decode(0, "{not json");
+        assertTrue(d.fixes().isEmpty());
+        assertTrue(d.status().isEmpty());
+    }
+}
@@ -0,0 +1,163 @@
+package com.gps.enlace.trip;
+
+import com.gps.enlace.domain.Stop;
+import com.gps.enlace.domain.Trip;
+import com.gps.enlace.domain.TripState;
+import com.gps.enlace.live.LiveFix;
+import com.gps.enlace.repo.StopRepo;
+import com.gps.enlace.repo.TripRepo;
+import com.gps.enlace.repo.TripStateRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TripTrackerTest {
+
+    private static final long DEVICE = 4;
+    private static final Instant T0 = Instant.parse("2025-03-03T08:00:00Z");
+    // 0.001° de latitud ≈ 111 m: cada 10 s equivale a ~40 km/h
+    private static final double STEP_DEG = 0.001;
+
+    private final List<Trip> savedTrips = new ArrayList<>();
+    private final List<Stop> savedStops = new ArrayList<>();
+    private final List<TripState> savedStates = new ArrayList<>();
+    private TripStateRepo stateRepo;
+    private TripTracker tracker;
+
+    private double lat = 19.0;
+
+    @BeforeEach
+    void setUp() {
+        stateRepo = mock(TripStateRepo.class);
+        tracker = newTracker();
+    }
+
+    @SuppressWarnings("unchecked")
+    private TripTracker newTracker() {
+        TripRepo trips = mock(TripRepo.class);
+        StopRepo stops = mock(StopRepo.class);
+        when(trips.saveAll(anyList())).thenAnswer(inv -> { savedTrips.addAll(inv.getArgument(0)); return inv.getArgument(0); });
+        when(stops.saveAll(anyList())).thenAnswer(inv -> { savedStops.addAll(inv.getArgument(0)); return inv.getArgument(0); });
+        doAnswer(inv -> savedStates.addAll(inv.getArgument(0))).when(stateRepo).upsertAll(anyList());
+        TripTracker t = new TripTracker(trips, stops, stateRepo);
+        ReflectionTestUtils.setField(t, "stopSpeedKph", 3.0);
+        ReflectionTestUtils.setField(t, "minStopSeconds", 300L);
+        ReflectionTestUtils.setField(t, "minMoveSeconds", 30L);
+        ReflectionTestUtils.setField(t, "minMoveMeters", 200.0);
+        ReflectionTestUtils.setField(t, "minTripMeters", 100.0);
+        ReflectionTestUtils.setField(t, "maxJumpKph", 300.0);
+        return t;
+    }
+
+    private LiveFix fix(long second, double lat, double speedKph) {
+        return new LiveFix(lat, -99.0, speedKph, null, T0.plusSeconds(second), DEVICE);
+    }
+
+    /** Fixes cada 10 s desde {@code from} (inclusive) hasta {@code to} (exclusive), avanzando si speed > 0. */
+    private void drive(long from, long to, double speedKph) {
+        for (long s = from; s < to; s += 10) {
+            if (speedKph > 0) lat += STEP_DEG;
+            tracker.onFix(fix(s, lat, speedKph));
+        }
+    }
+
+    @Test
+    void shortDwellKeepsTripOpenLongDwellClosesIt() {
+        drive(0, 600, 40);
+        drive(600, 720, 0);      // 2 min parado: semáforo, no es parada
+        drive(720, 1200, 40);
+        assertTrue(savedTrips.isEmpty());
+        assertEquals(TripTracker.Motion.MOVING, tracker.snapshot(DEVICE).orElseThrow().motion());
+
+        drive(1200, 1560, 0);    // 6 min parado
+        assertEquals(1, savedTrips.size());
+        Trip t = savedTrips.get(0);
+        assertEquals(T0, t.getStartTime().toInstant());
+        assertEquals(T0.plusSeconds(1200), t.getEndTime().toInstant());
+        assertEquals(TripTracker.Motion.STOPPED, tracker.snapshot(DEVICE).orElseThrow().motion());
+    }
+
+    @Test
+    void silentGapClosesTripAtLastFixAndRecordsTheGapAsStop() {
+        drive(0, 600, 40);
+        long lastBeforeGap = 590;
+        long morning = 13 * 3600;   // sin reportar durante la noche
+        drive(morning, morning + 60, 40);
+
+        assertEquals(1, savedTrips.size());
+        assertEquals(T0.plusSeconds(lastBeforeGap), savedTrips.get(0).getEndTime().toInstant());
+        assertEquals(1, savedStops.size());
+        Stop s = savedStops.get(0);
+        assertEquals(T0.plusSeconds(lastBeforeGap), s.getStartTime().toInstant());
+        assertEquals(T0.plusSeconds(morning), s.getEndTime().toInstant());
+
+        var snap = tracker.snapshot(DEVICE).orElseThrow();
+        assertEquals(TripTracker.Motion.MOVING, snap.motion());
+        assertEquals(T0.plusSeconds(morning), snap.since());
+    }
+
+    @Test
+    void singleSpeedSpikeDoesNotSplitAStop() {
+        drive(0, 300, 40);
+        drive(300, 1500, 0);
+        tracker.onFix(fix(1500, lat, 55));   // pico de velocidad sin moverse
+        drive(1510, 2700, 0);
+        assertTrue(savedStops.isEmpty());
+
+        drive(2700, 2800, 40);
+        assertEquals(1, savedStops.size());
+        Stop s = savedStops.get(0);
+        assertEquals(T0.plusSeconds(300), s.getStartTime().toInstant());
+        assertEquals(T0.plusSeconds(2700), s.getEndTime().toInstant());
+    }
+
+    @Test
+    void isolatedGpsJumpIsIgnoredByOdometer() {
+        tracker.onFix(fix(0, 19.0, 40));
+        tracker.onFix(fix(10, 19.001, 40));
+        tracker.onFix(fix(20, 19.5, 40));    // ~55 km en 10 s
+        tracker.onFix(fix(30, 19.002, 40));
+        double odometer = tracker.snapshot(DEVICE).orElseThrow().odometerM();
+        assertEquals(222, odometer, 5);
+    }
+
+    @Test
+    void confirmedRelocationReanchorsWithoutCountingTheJump() {
+        tracker.onFix(fix(0, 19.0, 40));
+        tracker.onFix(fix(10, 19.5, 40));    // salto
+        tracker.onFix(fix(20, 19.501, 40));  // coherente con el salto: la posición es real
+        tracker.onFix(fix(30, 19.502, 40));
+        double odometer = tracker.snapshot(DEVICE).orElseThrow().odometerM();
+        assertEquals(222, odometer, 5);
+    }
+
+    @Test
+    void stateSurvivesRestart() {
+        drive(0, 600, 40);
+        drive(600, 700, 0);      // parada candidata abierta
+        tracker.checkpoint();
+        var before = tracker.snapshot(DEVICE).orElseThrow();
+
+        when(stateRepo.findAll()).thenReturn(List.copyOf(savedStates));
+        tracker = newTracker();
+        tracker.load();
+        var after = tracker.snapshot(DEVICE).orElseThrow();
+        assertEquals(before.odometerM(), after.odometerM(), 1e-6);
+        assertEquals(before.since(), after.since());
+        assertEquals(before.motion(), after.motion());
+
+        drive(700, 1000, 0);     // completa la permanencia iniciada antes del reinicio
+        assertEquals(1, savedTrips.size());
+        assertEquals(T0.plusSeconds(600), savedTrips.get(0).getEndTime().toInstant());
+    }
+}